@@ -0,0 +1,305 @@
+package bench;
+
+import config.Geometry;
+import config.PuzzleReader;
+import config.SudokuBoard;
+import config.SudokuConfig;
+import main.CandidateScan;
+import solver.Budget;
+import solver.DancingLinksSolver;
+import solver.SolutionCache;
+import solver.SolveResult;
+import solver.SudokuSolver;
+
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.*;
+import java.util.function.ToLongFunction;
+
+/**
+ * Measures the solver over the graded corpus in data/corpus, so every performance change can be
+ * checked against the same puzzles before it goes in.
+ * <p>
+ * Each benchmark is run on each grade of puzzles for a number of warmup iterations, which let the JIT compile
+ * the code, and then for a number of measured iterations. Every iteration cycles through the grade's puzzles
+ * for a fixed amount of time. The report gives the throughput with its spread across iterations, the average
+ * latency per operation, the bytes allocated per operation by the benchmark thread, and the number of
+ * garbage collections during measurement.
+ * <p>
+ * With {@code --verify}, nothing is measured. Instead every puzzle of the chosen grades is checked to have exactly
+ * one solution, or none for the unsolvable grade, so a puzzle with several solutions cannot slip into the corpus
+ * and skew the timings. It also checks that a {@link SolutionCache} answers empty and nearly empty boards within
+ * {@link #QUICK_MILLIS}, since those have more symmetries than any corpus puzzle.
+ * <p>
+ * Usage: {@code SudokuBenchmark [--bench parse,candidates,scan,soften,solve,dlx] [--grade easy,hard,pathological,unsolvable]
+ * [--warmup n] [--iterations n] [--time ms] [--corpus dir] [--verify]}
+ *
+ * @author Dylan Sturr
+ */
+public class SudokuBenchmark {
+    private final static List<String> GRADES = List.of("easy", "hard", "pathological", "unsolvable");
+    /** How long a solution cache may take over an empty or nearly empty board */
+    private final static long QUICK_MILLIS = 1000;
+    /** Boards with so few clues, or so regular a pattern, that almost every symmetry of the grid keeps them the same */
+    private final static List<String> NEAR_EMPTY = List.of(
+            ".".repeat(81),
+            "1" + ".".repeat(80),
+            "12" + ".".repeat(79),
+            "123456789456789123" + ".".repeat(63),
+            "123456789456789123789123456" + ".".repeat(54));
+
+    /** Anything a benchmark produces is folded into here, so the JIT cannot discard the work */
+    private static volatile long sink;
+
+    private final Map<String, ToLongFunction<Puzzle>> benchmarks = new LinkedHashMap<>();
+    private final int warmup;
+    private final int iterations;
+    private final long nanosPerIteration;
+
+    /**
+     * A corpus puzzle, kept both as text for the parsing benchmark and as a board for everything else.
+     */
+    private record Puzzle(String line, SudokuBoard board){}
+
+    /**
+     * Sets up every benchmark
+     * @param warmup the number of unmeasured iterations
+     * @param iterations the number of measured iterations
+     * @param millis how long each iteration runs for
+     */
+    public SudokuBenchmark(int warmup, int iterations, long millis){
+        this.warmup = warmup;
+        this.iterations = iterations;
+        this.nanosPerIteration = millis * 1_000_000;
+
+        SudokuSolver solver = new SudokuSolver();
+        DancingLinksSolver dlx = new DancingLinksSolver();
+        benchmarks.put("parse", p -> new SudokuConfig(PuzzleReader.parse(p.line())).getBoard().emptyCount());
+        benchmarks.put("candidates", p -> {
+            SudokuConfig sc = new SudokuConfig(p.board());
+            int dim = p.board().geometry().dim();
+            long count = 0;
+            for (int r = 0; r < dim; r++){
+                for (int c = 0; c < dim; c++){
+                    count += sc.getCellCandidates(r, c).size();
+                }
+            }
+            return count;
+        });
+        CandidateScan[] scans = new CandidateScan[Geometry.MAX_BOX + 1];
+        benchmarks.put("scan", p -> {
+            Geometry geometry = p.board().geometry();
+            if (scans[geometry.box()] == null){
+                scans[geometry.box()] = new CandidateScan(geometry);
+            }
+            CandidateScan scan = scans[geometry.box()].scan(p.board());
+            long count = scan.nakedSingleCount();
+            for (int u = 0; u < geometry.unitCount(); u++){
+                count += Integer.bitCount(scan.hiddenSingles(u));
+            }
+            return count;
+        });
+        benchmarks.put("soften", p -> solver.soften(new SudokuConfig(new SudokuBoard(p.board()))).getBoard().emptyCount());
+        benchmarks.put("solve", p -> solver.solve(new SudokuConfig(p.board())).isPresent() ? 1 : 0);
+        benchmarks.put("dlx", p -> dlx.solve(new SudokuConfig(p.board())).isPresent() ? 1 : 0);
+    }
+
+    /**
+     * Runs one benchmark on one set of puzzles and prints a line of the report.
+     * @param name the benchmark
+     * @param grade the name of the puzzle set
+     * @param puzzles the puzzles
+     */
+    public void run(String name, String grade, List<Puzzle> puzzles){
+        ToLongFunction<Puzzle> benchmark = benchmarks.get(name);
+        for (int i = 0; i < warmup; i++){
+            iteration(benchmark, puzzles);
+        }
+
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        double[] throughput = new double[iterations];
+        long ops = 0;
+        long nanos = 0;
+        long gcs = -collections();
+        long allocated = -threads.getCurrentThreadAllocatedBytes();
+        for (int i = 0; i < iterations; i++){
+            long start = System.nanoTime();
+            long done = iteration(benchmark, puzzles);
+            long elapsed = System.nanoTime() - start;
+            throughput[i] = done * 1e9 / elapsed;
+            ops += done;
+            nanos += elapsed;
+        }
+        allocated += threads.getCurrentThreadAllocatedBytes();
+        gcs += collections();
+
+        double mean = Arrays.stream(throughput).average().orElse(0);
+        double deviation = Math.sqrt(Arrays.stream(throughput).map(t -> (t - mean) * (t - mean)).sum()
+                / Math.max(1, iterations - 1));
+        System.out.printf("%-12s %-14s %14.1f %10.1f %12.2f %12d %6d%n",
+                name, grade, mean, deviation, nanos / 1e3 / ops, allocated / ops, gcs);
+    }
+
+    /**
+     * Cycles through the puzzles until the iteration's time is up.
+     * @return the number of operations completed
+     */
+    private long iteration(ToLongFunction<Puzzle> benchmark, List<Puzzle> puzzles){
+        long end = System.nanoTime() + nanosPerIteration;
+        long ops = 0;
+        long result = 0;
+        while (System.nanoTime() < end){
+            for (Puzzle puzzle : puzzles){
+                result += benchmark.applyAsLong(puzzle);
+                ops++;
+            }
+        }
+        sink += result;
+        return ops;
+    }
+
+    /**
+     * Counts the garbage collections so far, across every collector.
+     */
+    private static long collections(){
+        long count = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()){
+            count += Math.max(0, gc.getCollectionCount());
+        }
+        return count;
+    }
+
+    /**
+     * Checks that every puzzle of one grade has as many solutions as its grade promises, and prints the ones that do not.
+     * @param grade the name of the puzzle set
+     * @param puzzles the puzzles
+     * @return the number of puzzles with the wrong number of solutions
+     */
+    private static int verify(String grade, List<Puzzle> puzzles){
+        SudokuSolver solver = new SudokuSolver();
+        long expected = grade.equals("unsolvable") ? 0 : 1;
+        int wrong = 0;
+        for (int i = 0; i < puzzles.size(); i++){
+            long count = solver.countSolutions(new SudokuConfig(puzzles.get(i).board()), 2);
+            if (count != expected){
+                System.out.printf("%s puzzle %d has %s solutions, expected %d: %s%n",
+                        grade, i + 1, count < 2 ? count : "several", expected, puzzles.get(i).line());
+                wrong++;
+            }
+        }
+        return wrong;
+    }
+
+    /**
+     * Checks that a solution cache answers each nearly empty board quickly, and prints the ones it does not.
+     * @return the number of boards that were too slow or were not solved
+     */
+    private static int verifyCache(){
+        SolutionCache cache = new SolutionCache(new SudokuSolver(), 0, 0);
+        int wrong = 0;
+        for (String line : NEAR_EMPTY){
+            long start = System.nanoTime();
+            SolveResult result = cache.solve(new SudokuConfig(PuzzleReader.parse(line)),
+                    Budget.ofTimeout(Duration.ofMillis(QUICK_MILLIS)));
+            long millis = (System.nanoTime() - start) / 1_000_000;
+            if (result.getStatus() != SolveResult.Status.SOLVED || millis > QUICK_MILLIS){
+                System.out.printf("The cache took %d ms and ended %s on %s%n", millis, result.getStatus(), line);
+                wrong++;
+            }
+        }
+        return wrong;
+    }
+
+    /**
+     * Loads the puzzles of one grade from the corpus.
+     * @param corpus the corpus directory
+     * @param grade the grade, which is also the file name
+     * @return the puzzles
+     * @throws IOException if the file cannot be read
+     */
+    private static List<Puzzle> load(Path corpus, String grade) throws IOException {
+        List<Puzzle> puzzles = new ArrayList<>();
+        for (String line : Files.readAllLines(corpus.resolve(grade + ".txt"))){
+            if (!line.isBlank() && !line.startsWith("#")){
+                puzzles.add(new Puzzle(line, PuzzleReader.parse(line)));
+            }
+        }
+        return puzzles;
+    }
+
+    /**
+     * Runs the chosen benchmarks on the chosen grades.
+     * @param args the options described in the class comment
+     */
+    public static void main(String[] args) {
+        List<String> names = List.of("parse", "candidates", "scan", "soften", "solve", "dlx");
+        List<String> grades = GRADES;
+        int warmup = 3;
+        int iterations = 5;
+        long millis = 1000;
+        Path corpus = Path.of("data", "corpus");
+        boolean verify = false;
+        for (int i = 0; i < args.length; i++){
+            switch (args[i]){
+                case "--bench" -> names = List.of(args[++i].split(","));
+                case "--grade" -> grades = List.of(args[++i].split(","));
+                case "--warmup" -> warmup = Integer.parseInt(args[++i]);
+                case "--iterations" -> iterations = Integer.parseInt(args[++i]);
+                case "--time" -> millis = Long.parseLong(args[++i]);
+                case "--corpus" -> corpus = Path.of(args[++i]);
+                case "--verify" -> verify = true;
+                default -> {
+                    System.err.println("Unknown option " + args[i]);
+                    return;
+                }
+            }
+        }
+
+        if (verify){
+            try{
+                int wrong = 0;
+                int total = 0;
+                for (String grade : grades){
+                    List<Puzzle> puzzles = load(corpus, grade);
+                    wrong += verify(grade, puzzles);
+                    total += puzzles.size();
+                }
+                System.out.println(wrong + " of " + total + " puzzles have the wrong number of solutions");
+                int slow = verifyCache();
+                System.out.println(slow + " of " + NEAR_EMPTY.size() + " nearly empty boards were not solved quickly");
+                if (wrong > 0 || slow > 0){
+                    System.exit(1);
+                }
+            }
+            catch (IOException e){
+                System.err.println("Could not read the corpus: " + e.getMessage());
+                System.exit(1);
+            }
+            return;
+        }
+
+        SudokuBenchmark benchmark = new SudokuBenchmark(warmup, iterations, millis);
+        for (String name : names){
+            if (!benchmark.benchmarks.containsKey(name)){
+                System.err.println("Unknown benchmark " + name + ", expected one of " + benchmark.benchmarks.keySet());
+                return;
+            }
+        }
+        System.out.printf("%-12s %-14s %14s %10s %12s %12s %6s%n", "Benchmark", "Grade", "ops/s", "error", "us/op", "B/op", "GCs");
+        try{
+            for (String grade : grades){
+                List<Puzzle> puzzles = load(corpus, grade);
+                for (String name : names){
+                    benchmark.run(name, grade, puzzles);
+                }
+            }
+        }
+        catch (IOException e){
+            System.err.println("Could not read the corpus: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,267 @@
+package config;
+
+import java.util.SplittableRandom;
+
+/**
+ * The shape of a sudoku board of n² x n² cells, made of n x n boxes of n x n cells each. Every board size has one
+ * shared geometry, which holds the lookup tables the board and the solvers index into: the row, column, and box of
+ * every cell, the peers of every cell, and the cells of every unit.
+ * <p>
+ * Digits run from 1 to n², so a candidate mask needs n² bits and boxes of up to 5 x 5 fit in an int. Digits are
+ * written with the symbols '1' to '9' followed by 'A' to 'P', so a 16x16 board uses 1-9 and A-G, and a 25x25 board
+ * uses 1-9 and A-P.
+ * <p>
+ * Each geometry also holds a Zobrist key for every digit in every cell, so a board can keep a hash of its placed
+ * digits up to date with one XOR per placement. The keys come from a fixed seed, so hashes are the same in every run.
+ *
+ * @author Dylan Sturr
+ */
+public final class Geometry {
+    public final static int MIN_BOX = 2;
+    public final static int MAX_BOX = 5;
+    public final static int MAX_DIM = MAX_BOX * MAX_BOX;
+    public final static int MAX_CELLS = MAX_DIM * MAX_DIM;
+    private final static String SYMBOLS = "123456789ABCDEFGHIJKLMNOP";
+
+    private final static Geometry[] SIZES = new Geometry[MAX_BOX + 1];
+
+    static {
+        for (int box = MIN_BOX; box <= MAX_BOX; box++){
+            SIZES[box] = new Geometry(box);
+        }
+    }
+
+    /** The standard 9x9 board */
+    public final static Geometry CLASSIC = SIZES[3];
+
+    private final int box;
+    private final int dim;
+    private final int cells;
+    private final int all;
+    private final int[] row;
+    private final int[] col;
+    private final int[] boxOf;
+    private final int[][] peers;
+    private final int[][] units;
+    private final long[] zobrist;
+
+    /**
+     * Builds every table for one board size.
+     */
+    private Geometry(int box){
+        this.box = box;
+        this.dim = box * box;
+        this.cells = dim * dim;
+        this.all = (1 << dim) - 1;
+        row = new int[cells];
+        col = new int[cells];
+        boxOf = new int[cells];
+        for (int cell = 0; cell < cells; cell++){
+            row[cell] = cell / dim;
+            col[cell] = cell % dim;
+            boxOf[cell] = (row[cell] / box) * box + col[cell] / box;
+        }
+
+        units = new int[3 * dim][dim];
+        int[] filled = new int[3 * dim];
+        for (int cell = 0; cell < cells; cell++){
+            int[] of = {row[cell], dim + col[cell], 2 * dim + boxOf[cell]};
+            for (int u : of){
+                units[u][filled[u]++] = cell;
+            }
+        }
+
+        peers = new int[cells][];
+        for (int cell = 0; cell < cells; cell++){
+            int[] list = new int[3 * (dim - 1) - 2 * (box - 1)];
+            int n = 0;
+            for (int other = 0; other < cells; other++){
+                if (other != cell && (row[other] == row[cell] || col[other] == col[cell] || boxOf[other] == boxOf[cell])){
+                    list[n++] = other;
+                }
+            }
+            peers[cell] = list;
+        }
+
+        zobrist = new long[cells * dim];
+        SplittableRandom random = new SplittableRandom(box);
+        for (int i = 0; i < zobrist.length; i++){
+            zobrist[i] = random.nextLong();
+        }
+    }
+
+    /**
+     * Gets the geometry of the boards with a given box size
+     * @param box the width of a box, from 2 to 5
+     * @return the geometry
+     * @throws IllegalArgumentException if the size is not supported
+     */
+    public static Geometry of(int box){
+        if (box < MIN_BOX || box > MAX_BOX){
+            throw new IllegalArgumentException("Boxes must be from " + MIN_BOX + " to " + MAX_BOX + " cells wide, not " + box);
+        }
+        return SIZES[box];
+    }
+
+    /**
+     * Finds the geometry whose rows hold a given number of cells
+     * @param dim the width of the board
+     * @return the geometry, or null if no supported board is that wide
+     */
+    public static Geometry ofDim(int dim){
+        for (int box = MIN_BOX; box <= MAX_BOX; box++){
+            if (SIZES[box].dim == dim){
+                return SIZES[box];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Finds the geometry of a board with a given number of cells
+     * @param cells the number of cells
+     * @return the geometry, or null if no supported board has that many cells
+     */
+    public static Geometry ofCells(int cells){
+        for (int box = MIN_BOX; box <= MAX_BOX; box++){
+            if (SIZES[box].cells == cells){
+                return SIZES[box];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Reads a symbol of the alphabet. Letters may be either case.
+     * @param c the character
+     * @return the digit it stands for, 0 for an empty cell ('.', '0', or '-'), or -1 if it is neither
+     */
+    public static int digit(int c){
+        if (c == '.' || c == '0' || c == '-'){
+            return 0;
+        }
+        if (c >= '1' && c <= '9'){
+            return c - '0';
+        }
+        int upper = c & ~0x20;
+        if (upper >= 'A' && upper < 'A' + MAX_DIM - 9){
+            return upper - 'A' + 10;
+        }
+        return -1;
+    }
+
+    /**
+     * Gets the symbol written for a digit
+     * @param digit the digit, from 1 to 25
+     * @return its symbol
+     */
+    public static char symbol(int digit){
+        return SYMBOLS.charAt(digit - 1);
+    }
+
+    /**
+     * Gets the width of a box
+     * @return n
+     */
+    public int box(){
+        return box;
+    }
+
+    /**
+     * Gets the width of the board, which is also the number of digits and the number of cells in a unit
+     * @return n²
+     */
+    public int dim(){
+        return dim;
+    }
+
+    /**
+     * Gets the number of cells
+     * @return n⁴
+     */
+    public int cells(){
+        return cells;
+    }
+
+    /**
+     * Gets the number of units. Units 0 to n²-1 are rows, the next n² are columns, and the last n² are boxes.
+     * @return 3n²
+     */
+    public int unitCount(){
+        return 3 * dim;
+    }
+
+    /**
+     * Gets the mask holding every digit
+     * @return the full candidate mask
+     */
+    public int all(){
+        return all;
+    }
+
+    /**
+     * Gets the row of a cell
+     * @param cell the cell index, row * n² + col
+     * @return the row
+     */
+    public int row(int cell){
+        return row[cell];
+    }
+
+    /**
+     * Gets the column of a cell
+     * @param cell the cell index
+     * @return the column
+     */
+    public int col(int cell){
+        return col[cell];
+    }
+
+    /**
+     * Gets the box of a cell, with boxes numbered in row-major order
+     * @param cell the cell index
+     * @return the box
+     */
+    public int boxOf(int cell){
+        return boxOf[cell];
+    }
+
+    /**
+     * Gets the peers of a cell, which are the other cells sharing its row, column, or box.
+     * The array is shared and must not be changed.
+     * @param cell the cell index
+     * @return the peers
+     */
+    public int[] peers(int cell){
+        return peers[cell];
+    }
+
+    /**
+     * Gets the cells of a unit. The array is shared and must not be changed.
+     * @param unit the unit index, numbered as described by {@link #unitCount()}
+     * @return the cells, in row-major order
+     */
+    public int[] unit(int unit){
+        return units[unit];
+    }
+
+    /**
+     * Gets the Zobrist key of a digit in a cell, which a board XORs into its hash when the digit is placed
+     * and out again when it is removed.
+     * @param cell the cell index
+     * @param digit the digit, from 1 to n²
+     * @return the random key
+     */
+    public long zobrist(int cell, int digit){
+        return zobrist[cell * dim + digit - 1];
+    }
+
+    /**
+     * Describes the size of the board
+     * @return the size, such as "9x9"
+     */
+    @Override
+    public String toString(){
+        return dim + "x" + dim;
+    }
+}
@@ -0,0 +1,271 @@
+package config;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Reads puzzles from a file, one after another. Two formats are accepted, and may even be mixed:
+ * <ul>
+ *     <li>the grid format of the data files, one row per line with the cells of a row separated by spaces</li>
+ *     <li>the compact format of one puzzle per line, with no separators</li>
+ * </ul>
+ * Boards of 9x9, 16x16, and 25x25 cells are read, and the size of each puzzle follows from the length of its first
+ * line: 9, 16, or 25 cells is the first row of a grid, and 81, 256, or 625 cells is a whole puzzle. Smaller 4x4
+ * puzzles can be read in the grid format. Digits are the symbols of {@link Geometry}, '1' to '9' and then 'A' to 'P',
+ * and '.', '0', and '-' are empty cells. Blank lines and lines starting with '#' are skipped.
+ * <p>
+ * The file is memory mapped through a {@link FileChannel} a window at a time, and its bytes are decoded
+ * straight into each board's digits, so no Strings or tokens are ever created. This keeps parsing
+ * from becoming the bottleneck on corpora with millions of puzzles.
+ *
+ * @author Dylan Sturr
+ */
+public class PuzzleReader implements Iterator<SudokuBoard>, Closeable {
+    private final static long WINDOW = 1L << 26;
+
+    private final FileChannel channel;
+    private final long size;
+    private final Decoder decoder = new Decoder();
+    private MappedByteBuffer buffer;
+    private long position;
+    private SudokuBoard next;
+
+    /**
+     * Opens a puzzle file
+     * @param path the file to read
+     * @throws IOException if the file cannot be opened
+     */
+    public PuzzleReader(Path path) throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.READ);
+        size = channel.size();
+    }
+
+    /**
+     * Reads the first puzzle of a file
+     * @param path the file to read
+     * @return the puzzle
+     * @throws IOException if the file cannot be read or holds no puzzle
+     */
+    public static SudokuBoard readFirst(Path path) throws IOException {
+        try (PuzzleReader reader = new PuzzleReader(path)){
+            if (!reader.hasNext()){
+                throw new EOFException(path + " does not contain a puzzle");
+            }
+            return reader.next();
+        }
+    }
+
+    /**
+     * Parses a single puzzle held in memory, in either format
+     * @param text the puzzle
+     * @return the puzzle
+     * @throws IllegalArgumentException if the text is not exactly one puzzle
+     */
+    public static SudokuBoard parse(CharSequence text){
+        Decoder decoder = new Decoder();
+        SudokuBoard board = null;
+        for (int i = 0; i <= text.length(); i++){
+            if (i < text.length() ? decoder.accept(text.charAt(i)) : decoder.finish()){
+                if (board != null){
+                    throw new IllegalArgumentException("Expected a single puzzle, but found more");
+                }
+                board = decoder.board();
+            }
+        }
+        if (board == null){
+            throw new IllegalArgumentException("Expected a puzzle, but found none");
+        }
+        return board;
+    }
+
+    /**
+     * Did the last puzzle come in the compact one line format?
+     * @return whether the last puzzle read was a single line
+     */
+    public boolean isLineFormat(){
+        return decoder.puzzleLines == 1;
+    }
+
+    /**
+     * Decodes bytes until the next puzzle is complete
+     * @return whether there is another puzzle
+     * @throws UncheckedIOException if mapping the file fails
+     * @throws IllegalArgumentException if the file is malformed
+     */
+    @Override
+    public boolean hasNext(){
+        if (next != null){
+            return true;
+        }
+        try{
+            while (true){
+                if (buffer == null || !buffer.hasRemaining()){
+                    if (position >= size){
+                        if (decoder.finish()){
+                            next = decoder.board();
+                        }
+                        return next != null;
+                    }
+                    long length = Math.min(WINDOW, size - position);
+                    buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+                    position += length;
+                }
+                while (buffer.hasRemaining()){
+                    if (decoder.accept(buffer.get())){
+                        next = decoder.board();
+                        return true;
+                    }
+                }
+            }
+        }
+        catch (IOException e){
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Gets the next puzzle
+     * @return the puzzle
+     */
+    @Override
+    public SudokuBoard next(){
+        if (!hasNext()){
+            throw new NoSuchElementException();
+        }
+        SudokuBoard board = next;
+        next = null;
+        return board;
+    }
+
+    /**
+     * Closes the file
+     * @throws IOException if closing fails
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * A state machine that collects cells one character at a time.
+     * A puzzle is complete at the end of the line that holds its last cell.
+     */
+    private static class Decoder {
+        private final byte[] digits = new byte[Geometry.MAX_CELLS];
+        private Geometry geometry;
+        private int count;
+        private int lineCells;
+        private int lines;
+        private int puzzleLines;
+        private int lineNumber = 1;
+        private boolean comment;
+
+        /**
+         * Takes the next character of the input
+         * @param c the character
+         * @return whether a puzzle was just completed
+         */
+        private boolean accept(int c){
+            switch (c){
+                case '\n' -> {
+                    return endLine();
+                }
+                case ' ', '\t', '\r' -> {
+                    return false;
+                }
+                default -> {
+                    if (comment){
+                        return false;
+                    }
+                    if (c == '#' && lineCells == 0){
+                        comment = true;
+                        return false;
+                    }
+                    if (count == digits.length){
+                        throw error("a puzzle has more than " + digits.length + " cells");
+                    }
+                    int d = Geometry.digit(c);
+                    if (d < 0){
+                        throw error("'" + (char) c + "' is not a digit or an empty cell");
+                    }
+                    digits[count++] = (byte) d;
+                    lineCells++;
+                    return false;
+                }
+            }
+        }
+
+        /**
+         * Ends the input, completing a puzzle whose last line has no line break.
+         * @return whether a puzzle was just completed
+         */
+        private boolean finish(){
+            if (lineCells > 0 && endLine()){
+                return true;
+            }
+            if (count > 0){
+                throw error("the last puzzle only has " + count + " of " + geometry.cells() + " cells");
+            }
+            return false;
+        }
+
+        /**
+         * Handles a line break. The first line of a puzzle decides its size, and every line after it must
+         * hold whole rows of that size.
+         * @return whether a puzzle was just completed
+         */
+        private boolean endLine(){
+            boolean complete = false;
+            if (lineCells > 0){
+                if (count == lineCells){
+                    geometry = Geometry.ofDim(lineCells);
+                    if (geometry == null){
+                        geometry = Geometry.ofCells(lineCells);
+                    }
+                    if (geometry == null){
+                        throw error("expected 9, 16, or 25 cells on a row, or 81, 256, or 625 on a line, found " + lineCells);
+                    }
+                }
+                else if (count % geometry.dim() != 0 || count > geometry.cells()){
+                    throw error("expected " + geometry.dim() + " cells on a row of a " + geometry + " puzzle, found " + lineCells);
+                }
+                for (int i = count - lineCells; i < count; i++){
+                    if (digits[i] > geometry.dim()){
+                        throw error("'" + Geometry.symbol(digits[i]) + "' is not a digit of a " + geometry + " puzzle");
+                    }
+                }
+                lines++;
+                complete = count == geometry.cells();
+            }
+            lineCells = 0;
+            comment = false;
+            lineNumber++;
+            return complete;
+        }
+
+        /**
+         * Builds the completed puzzle and starts collecting the next one.
+         * @return the puzzle
+         */
+        private SudokuBoard board(){
+            SudokuBoard board = new SudokuBoard(Arrays.copyOf(digits, count));
+            count = 0;
+            puzzleLines = lines;
+            lines = 0;
+            return board;
+        }
+
+        private IllegalArgumentException error(String message){
+            return new IllegalArgumentException("Line " + lineNumber + ": " + message);
+        }
+    }
+}
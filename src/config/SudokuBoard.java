@@ -0,0 +1,477 @@
+package config;
+
+import java.util.Arrays;
+
+/**
+ * A primitive representation of an n² x n² sudoku board, 9x9 unless another {@link Geometry} is given.
+ * Cells are stored row-major in a flat array, and every empty cell keeps an n²-bit mask of its remaining candidates.
+ * Digit d is represented by bit (d - 1). Row, column, and box occupancy masks are kept up to date as digits are
+ * placed, so checking whether a digit fits in a cell is a single AND against the masks of its row, column, and box.
+ * Digits that repeat within a unit, which can only come from loading a broken puzzle, are tracked in a conflict mask
+ * per unit.
+ * <p>
+ * Every placement and elimination is recorded on a trail, so a search can change one board in place and roll it
+ * back to an earlier {@link #mark()} with {@link #undo(int)} instead of copying the board for each successor.
+ * The trail starts small and grows as needed, so copies of large boards stay cheap.
+ * <p>
+ * The board also keeps a Zobrist hash of its placed digits, the XOR of the {@link Geometry#zobrist(int, int)} key of
+ * every filled cell, which placements and {@link #undo(int)} update as they go. Two boards with the same digits have
+ * the same hash however they got there, so it can key tables of positions that have already been searched.
+ *
+ * @author Dylan Sturr
+ */
+public class SudokuBoard {
+    private final static long ASSIGNED = 1L << 62;
+    private final static long MASK = 0xFFFFFFFFL;
+
+    private final Geometry geometry;
+    private final byte[] cells;
+    private final int[] candidates;
+    private final int[] rowUsed;
+    private final int[] colUsed;
+    private final int[] boxUsed;
+    private final int[] conflicts;
+    private int empty;
+    private long hash;
+    private long[] trail;
+    private int trailSize;
+
+    /**
+     * Creates an empty 9x9 board, where every cell can hold any digit.
+     */
+    public SudokuBoard(){
+        this(Geometry.CLASSIC);
+    }
+
+    /**
+     * Creates an empty board of any size, where every cell can hold any digit.
+     * @param geometry the size of the board
+     */
+    public SudokuBoard(Geometry geometry){
+        this.geometry = geometry;
+        int dim = geometry.dim();
+        cells = new byte[geometry.cells()];
+        candidates = new int[geometry.cells()];
+        rowUsed = new int[dim];
+        colUsed = new int[dim];
+        boxUsed = new int[dim];
+        conflicts = new int[geometry.unitCount()];
+        Arrays.fill(candidates, geometry.all());
+        empty = geometry.cells();
+        trail = new long[2 * geometry.cells()];
+    }
+
+    /**
+     * Creates a board from its digits, computing every mask in a single pass.
+     * The size of the board follows from the number of digits.
+     * @param digits the digit of every cell in row-major order, with 0 for empty cells
+     * @throws IllegalArgumentException if no supported board has that many cells, or a digit is out of range
+     */
+    public SudokuBoard(byte[] digits){
+        this(geometryOf(digits));
+        System.arraycopy(digits, 0, cells, 0, cells.length);
+        for (byte d : cells){
+            if (d < 0 || d > geometry.dim()){
+                throw new IllegalArgumentException(d + " is not a digit of a " + geometry + " board");
+            }
+            if (d != 0){
+                empty--;
+            }
+        }
+        rebuild();
+    }
+
+    /**
+     * The copy constructor, which only copies the primitive arrays of the other board, including its trail.
+     * @param other the board to copy
+     */
+    public SudokuBoard(SudokuBoard other){
+        geometry = other.geometry;
+        cells = other.cells.clone();
+        candidates = other.candidates.clone();
+        rowUsed = other.rowUsed.clone();
+        colUsed = other.colUsed.clone();
+        boxUsed = other.boxUsed.clone();
+        conflicts = other.conflicts.clone();
+        empty = other.empty;
+        hash = other.hash;
+        trail = Arrays.copyOf(other.trail, Math.max(other.trailSize, 2 * cells.length));
+        trailSize = other.trailSize;
+    }
+
+    private static Geometry geometryOf(byte[] digits){
+        Geometry geometry = Geometry.ofCells(digits.length);
+        if (geometry == null){
+            throw new IllegalArgumentException("No supported board has " + digits.length + " cells");
+        }
+        return geometry;
+    }
+
+    /**
+     * Gets the size of this board, along with its lookup tables
+     * @return the geometry
+     */
+    public Geometry geometry(){
+        return geometry;
+    }
+
+    /**
+     * Gets the bit that represents a digit in a mask
+     * @param digit the digit, from 1 to n²
+     * @return the digit's bit
+     */
+    public static int bit(int digit){
+        return 1 << (digit - 1);
+    }
+
+    /**
+     * Gets the lowest digit contained in a mask
+     * @param mask a non-empty candidate mask
+     * @return the lowest digit in the mask
+     */
+    public static int digit(int mask){
+        return Integer.numberOfTrailingZeros(mask) + 1;
+    }
+
+    /**
+     * Gets the digit stored in a cell
+     * @param cell the cell index, row * n² + col
+     * @return the digit, or 0 if the cell is empty
+     */
+    public int get(int cell){
+        return cells[cell];
+    }
+
+    /**
+     * Gets the digit stored at a row and column
+     * @param row cell's row
+     * @param col cell's column
+     * @return the digit, or 0 if the cell is empty
+     */
+    public int get(int row, int col){
+        return cells[row * geometry.dim() + col];
+    }
+
+    /**
+     * Gets the candidate mask of a cell. Filled cells have no candidates.
+     * @param cell the cell index
+     * @return the mask of digits that can still go in the cell
+     */
+    public int candidates(int cell){
+        return candidates[cell];
+    }
+
+    /**
+     * Copies the candidate mask of every cell into an array, so a whole-board scan can read them without
+     * a call per cell.
+     * @param into the array to fill, with room for every cell
+     */
+    public void copyCandidates(int[] into){
+        System.arraycopy(candidates, 0, into, 0, candidates.length);
+    }
+
+    /**
+     * Gets the mask of digits already used by a cell's row, column, and box.
+     * @param cell the cell index
+     * @return the mask of used digits
+     */
+    public int used(int cell){
+        return rowUsed[geometry.row(cell)] | colUsed[geometry.col(cell)] | boxUsed[geometry.boxOf(cell)];
+    }
+
+    /**
+     * Gets the mask of digits already placed in a unit.
+     * @param unit the unit index, as numbered by {@link Geometry#unitCount()}
+     * @return the mask of used digits
+     */
+    public int unitUsed(int unit){
+        int dim = geometry.dim();
+        if (unit < dim){
+            return rowUsed[unit];
+        }
+        return unit < 2 * dim ? colUsed[unit - dim] : boxUsed[unit - 2 * dim];
+    }
+
+    /**
+     * Checks if a digit can go in an empty cell without repeating in its row, column, or box.
+     * @param cell the cell index
+     * @param digit the digit to test
+     * @return whether the digit fits
+     */
+    public boolean canPlace(int cell, int digit){
+        return cells[cell] == 0 && (used(cell) & bit(digit)) == 0;
+    }
+
+    /**
+     * Gets the digits that appear more than once in a unit
+     * @param unit the unit index, as numbered by {@link Geometry#unitCount()}
+     * @return the mask of repeated digits, which is 0 for a valid unit
+     */
+    public int conflicts(int unit){
+        return conflicts[unit];
+    }
+
+    /**
+     * Checks whether any unit repeats a digit.
+     * @return whether the board breaks the sudoku rules
+     */
+    public boolean hasConflicts(){
+        for (int c : conflicts){
+            if (c != 0){
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Places a digit in an empty cell and removes it from the candidates of every peer.
+     * @param cell the cell index
+     * @param digit the digit to place
+     * @return false if the digit does not fit, in which case the board is unchanged
+     */
+    public boolean place(int cell, int digit){
+        if (!canPlace(cell, digit)){
+            return false;
+        }
+        assign(cell, digit);
+        return true;
+    }
+
+    /**
+     * Sets a cell without checking the sudoku rules, as used when loading a puzzle.
+     * Setting a cell to 0 empties it, which recomputes every candidate mask.
+     * Since this changes the starting point of any search, the trail is cleared.
+     * @param cell the cell index
+     * @param digit the digit, or 0 to clear the cell
+     */
+    public void set(int cell, int digit){
+        if (cells[cell] != 0){
+            cells[cell] = 0;
+            empty++;
+            rebuild();
+        }
+        if (digit != 0){
+            assign(cell, digit);
+        }
+        trailSize = 0;
+    }
+
+    /**
+     * Removes a single candidate from an empty cell.
+     * @param cell the cell index
+     * @param digit the candidate to remove
+     * @return whether the candidate was present
+     */
+    public boolean eliminate(int cell, int digit){
+        int b = bit(digit);
+        if ((candidates[cell] & b) == 0){
+            return false;
+        }
+        if (trailSize == trail.length){
+            grow(1);
+        }
+        trail[trailSize++] = (long) cell << 32 | candidates[cell];
+        candidates[cell] &= ~b;
+        return true;
+    }
+
+    /**
+     * Marks the current position of the trail, so the board can later be rolled back to this state.
+     * @return the trail mark
+     */
+    public int mark(){
+        return trailSize;
+    }
+
+    /**
+     * Rolls back every placement and elimination made since a mark was taken.
+     * @param mark a mark returned by {@link #mark()}
+     */
+    public void undo(int mark){
+        while (trailSize > mark){
+            long entry = trail[--trailSize];
+            int cell = (int) (entry >>> 32) & 0xFFFF;
+            if ((entry & ASSIGNED) != 0){
+                int b = ~bit(cells[cell]);
+                rowUsed[geometry.row(cell)] &= b;
+                colUsed[geometry.col(cell)] &= b;
+                boxUsed[geometry.boxOf(cell)] &= b;
+                hash ^= geometry.zobrist(cell, cells[cell]);
+                cells[cell] = 0;
+                empty++;
+            }
+            candidates[cell] = (int) (entry & MASK);
+        }
+    }
+
+    /**
+     * Gets the Zobrist hash of the digits on the board
+     * @return the hash, which is 0 for an empty board
+     */
+    public long hash(){
+        return hash;
+    }
+
+    /**
+     * Is every cell filled?
+     * @return whether the board has no empty cells
+     */
+    public boolean isFull(){
+        return empty == 0;
+    }
+
+    /**
+     * Gets the number of empty cells
+     * @return the number of empty cells
+     */
+    public int emptyCount(){
+        return empty;
+    }
+
+    /**
+     * Writes a digit into the cell, updates the occupancy masks, and removes the digit from the peers.
+     * Each change is pushed onto the trail so it can be undone.
+     */
+    private void assign(int cell, int digit){
+        int b = bit(digit);
+        int[] peers = geometry.peers(cell);
+        if (trailSize + peers.length >= trail.length){
+            grow(peers.length + 1);
+        }
+        trail[trailSize++] = ASSIGNED | (long) cell << 32 | candidates[cell];
+        cells[cell] = (byte) digit;
+        candidates[cell] = 0;
+        hash ^= geometry.zobrist(cell, digit);
+        markConflicts(cell, b);
+        rowUsed[geometry.row(cell)] |= b;
+        colUsed[geometry.col(cell)] |= b;
+        boxUsed[geometry.boxOf(cell)] |= b;
+        empty--;
+        for (int peer : peers){
+            if ((candidates[peer] & b) != 0){
+                trail[trailSize++] = (long) peer << 32 | candidates[peer];
+                candidates[peer] &= ~b;
+            }
+        }
+    }
+
+    /**
+     * Makes room on the trail for at least a number of new entries, doubling it as often as needed.
+     */
+    private void grow(int needed){
+        int length = trail.length;
+        while (trailSize + needed > length){
+            length *= 2;
+        }
+        trail = Arrays.copyOf(trail, length);
+    }
+
+    /**
+     * Records a digit as a conflict in each of the cell's units that already holds it.
+     */
+    private void markConflicts(int cell, int b){
+        int dim = geometry.dim();
+        if ((rowUsed[geometry.row(cell)] & b) != 0){
+            conflicts[geometry.row(cell)] |= b;
+        }
+        if ((colUsed[geometry.col(cell)] & b) != 0){
+            conflicts[dim + geometry.col(cell)] |= b;
+        }
+        if ((boxUsed[geometry.boxOf(cell)] & b) != 0){
+            conflicts[2 * dim + geometry.boxOf(cell)] |= b;
+        }
+    }
+
+    /**
+     * Recomputes the occupancy masks, conflicts, hash, and candidates from the cell values alone.
+     */
+    private void rebuild(){
+        Arrays.fill(rowUsed, 0);
+        Arrays.fill(colUsed, 0);
+        Arrays.fill(boxUsed, 0);
+        Arrays.fill(conflicts, 0);
+        hash = 0;
+        for (int cell = 0; cell < cells.length; cell++){
+            if (cells[cell] != 0){
+                int b = bit(cells[cell]);
+                hash ^= geometry.zobrist(cell, cells[cell]);
+                markConflicts(cell, b);
+                rowUsed[geometry.row(cell)] |= b;
+                colUsed[geometry.col(cell)] |= b;
+                boxUsed[geometry.boxOf(cell)] |= b;
+            }
+        }
+
+        // Every cell in a band of rows sees the same box for each column, so the column and box masks are merged
+        // once per band, and each row of the band is then a straight pass over the merged masks.
+        int dim = geometry.dim();
+        int box = geometry.box();
+        int[] lanes = new int[dim];
+        for (int band = 0; band < dim; band += box){
+            for (int c = 0; c < dim; c++){
+                lanes[c] = colUsed[c] | boxUsed[band + c / box];
+            }
+            for (int r = band; r < band + box; r++){
+                int free = geometry.all() & ~rowUsed[r];
+                int base = r * dim;
+                for (int c = 0; c < dim; c++){
+                    candidates[base + c] = cells[base + c] != 0 ? 0 : free & ~lanes[c];
+                }
+            }
+        }
+    }
+
+    /**
+     * Two boards are equal if they hold the same digits.
+     * @param other the other board
+     * @return whether the boards are equal
+     */
+    @Override
+    public boolean equals(Object other){
+        if (other instanceof SudokuBoard board){
+            return Arrays.equals(cells, board.cells);
+        }
+        return false;
+    }
+
+    /**
+     * The hash code of a board is taken from the Zobrist hash of its digits.
+     * @return the hash code
+     */
+    @Override
+    public int hashCode(){
+        return Long.hashCode(hash);
+    }
+
+    /**
+     * Represents the board as a single line of one symbol per cell, such as 81 characters for a 9x9 board,
+     * with '.' for empty cells.
+     * @return the compact version of this board
+     */
+    public String toLine(){
+        char[] line = new char[cells.length];
+        for (int cell = 0; cell < cells.length; cell++){
+            line[cell] = cells[cell] == 0 ? '.' : Geometry.symbol(cells[cell]);
+        }
+        return new String(line);
+    }
+
+    /**
+     * Represents the board in the same one line per row format used by the puzzle files.
+     * @return a string version of this board
+     */
+    @Override
+    public String toString(){
+        StringBuilder result = new StringBuilder();
+        int dim = geometry.dim();
+        for (int r = 0; r < dim; r++){
+            for (int c = 0; c < dim; c++){
+                int d = cells[r * dim + c];
+                result.append(d == 0 ? '-' : Geometry.symbol(d)).append(" ");
+            }
+            result.append("\n");
+        }
+        return result.toString();
+    }
+}
@@ -1,109 +1,106 @@
 package config;
 
-import java.io.File;
-import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.*;
 
 /**
- * Represents any 9x9 sudoku configuration.
+ * Represents any sudoku configuration, 9x9 or any other size its {@link Geometry} allows. The puzzle itself
+ * lives in a primitive {@link SudokuBoard}; this class adapts it to the cell based view used by the GUI.
  *
  * @author Dylan Sturr
  */
 public class SudokuConfig {
-    private final static int DIM = 9;
-    private final SudokuCell[][] grid;
-    private int cursorRow;
-    private int cursorCol;
+    private final SudokuBoard board;
 
     /**
-     * Initialize this SudokuConfig based on a given file
+     * Initialize this SudokuConfig based on the first puzzle of a given file, in either puzzle format
      *
      * @param filename the name of the file
-     * @throws FileNotFoundException if the filename is invalid or not found
+     * @throws IOException if the filename is invalid or not found, or the file holds no puzzle
+     * @see PuzzleReader
      */
-    public SudokuConfig(String filename) throws FileNotFoundException {
-        grid = new SudokuCell[DIM][DIM];
-        cursorRow = 0;
-        cursorCol = -1;
-        try (Scanner in = new Scanner(new File(filename))){
-            while (in.hasNextLine()){
-                for (int i = 0; i < DIM; i++) {
-                    String line = in.nextLine();
-                    String[] fields = line.split(" ");
-                    for (int j = 0; j < fields.length; j++){
-                        grid[i][j] = new SudokuCell(i, j, fields[j].charAt(0));
-                    }
-                }
-            }
-        }
+    public SudokuConfig(String filename) throws IOException {
+        board = PuzzleReader.readFirst(Path.of(filename));
     }
 
     /**
-     * The copy constructor which advances the cursor, creates a new grid,
-     * and populates the grid at the cursor location with val
+     * Wraps an existing board. The board is shared, not copied.
      *
-     * @param other the board to copy
-     * @param val   the value to store at new cursor location
+     * @param board the board holding the puzzle
      */
-    public SudokuConfig(SudokuConfig other, char val){
-        this.grid = new SudokuCell[DIM][DIM];
-        for (int i = 0; i < DIM; i++){
-            for (int j = 0; j < DIM; j++){
-                this.grid[i][j] = new SudokuCell(i, j, other.grid[i][j].getVal());
-            }
-        }
-
-        this.cursorRow = other.cursorRow;
-        this.cursorCol = other.cursorCol + 1;
+    public SudokuConfig(SudokuBoard board){
+        this.board = board;
+    }
 
-        if (cursorCol >= DIM) {
-            cursorCol = 0;
-            if (cursorRow + 1 < DIM){
-                cursorRow++;
+    /**
+     * Builds a configuration straight from a grid of symbols, such as the one behind the GUI, without going
+     * through a file. Empty cells may be '.', '0', or '-'.
+     *
+     * @param grid the rows of the puzzle, 9, 16, or 25 symbols each
+     * @return the configuration, on a board of its own
+     * @throws IllegalArgumentException if the grid is not square, is not a supported size, or holds a symbol
+     * that is not a digit of its size
+     */
+    public static SudokuConfig fromGrid(char[][] grid){
+        Geometry geometry = geometryOf(grid.length);
+        int dim = geometry.dim();
+        byte[] digits = new byte[geometry.cells()];
+        for (int r = 0; r < dim; r++){
+            checkRow(grid[r].length, dim, r);
+            for (int c = 0; c < dim; c++){
+                int digit = Geometry.digit(grid[r][c]);
+                if (digit < 0 || digit > dim){
+                    throw new IllegalArgumentException("'" + grid[r][c] + "' is not a digit of a " + geometry + " puzzle");
+                }
+                digits[r * dim + c] = (byte) digit;
             }
         }
-
-        this.grid[cursorRow][cursorCol].setVal(val);
+        return new SudokuConfig(new SudokuBoard(digits));
     }
 
     /**
-     * The constructor used to determine validity of a cell's candidates.
+     * Builds a configuration straight from a grid of digits, with 0 for an empty cell.
      *
-     * @param other the board to copy
-     * @param val the value to store at the cell's location
-     * @param row cell's row
-     * @param col cell's column
-     */
-    public SudokuConfig(SudokuConfig other, char val, int row, int col){
-        this.grid = new SudokuCell[DIM][DIM];
-        for (int i = 0; i < DIM; i++){
-            for (int j = 0; j < DIM; j++){
-                this.grid[i][j] = new SudokuCell(i, j, other.grid[i][j].getVal());
-                this.grid[i][j].setCandidates(other.grid[i][j].getCandidates());
+     * @param grid the rows of the puzzle, 9, 16, or 25 digits each
+     * @return the configuration, on a board of its own
+     * @throws IllegalArgumentException if the grid is not square, is not a supported size, or holds a number
+     * outside 0 to the width of the grid
+     */
+    public static SudokuConfig fromGrid(int[][] grid){
+        Geometry geometry = geometryOf(grid.length);
+        int dim = geometry.dim();
+        byte[] digits = new byte[geometry.cells()];
+        for (int r = 0; r < dim; r++){
+            checkRow(grid[r].length, dim, r);
+            for (int c = 0; c < dim; c++){
+                if (grid[r][c] < 0 || grid[r][c] > dim){
+                    throw new IllegalArgumentException(grid[r][c] + " is not a digit of a " + geometry + " puzzle");
+                }
+                digits[r * dim + c] = (byte) grid[r][c];
             }
         }
-        this.grid[row][col].setVal(val);
+        return new SudokuConfig(new SudokuBoard(digits));
     }
 
     /**
-     * Constructs and returns a list of this configuration's valid successors.
-     *
-     * @return the list of this sudoku config's valid successors.
+     * Finds the geometry of a grid with a given number of rows.
      */
-    public List<SudokuConfig> getSuccessors(){
-        List<SudokuConfig> successors = new ArrayList<>();
-        SudokuCell nextCell = cursorCol + 1 < DIM ? grid[cursorRow][cursorCol + 1] : cursorRow + 1 < DIM ? grid[cursorRow + 1][0] : grid[0][0];
-        if (nextCell.getVal() != '-'){
-            successors.add(new SudokuConfig(this, nextCell.getVal()));
-        }
-        else{
-            List<Character> candidates = getCellCandidates(nextCell.getRow(), nextCell.getCol());
-            for (char c : candidates){
-                successors.add(new SudokuConfig(this, c));
-            }
+    private static Geometry geometryOf(int rows){
+        Geometry geometry = Geometry.ofDim(rows);
+        if (geometry == null){
+            throw new IllegalArgumentException("expected 9, 16, or 25 rows, found " + rows);
         }
+        return geometry;
+    }
 
-        return successors;
+    /**
+     * Checks that a row of a grid is as long as the grid is tall.
+     */
+    private static void checkRow(int length, int dim, int row){
+        if (length != dim){
+            throw new IllegalArgumentException("expected " + dim + " cells on row " + (row + 1) + ", found " + length);
+        }
     }
 
     /**
@@ -113,19 +110,11 @@ public class SudokuConfig {
      * @return a list of the cell's candidates
      */
     public List<Character> getCellCandidates(int row, int col){
-        if (!grid[row][col].getCandidates().isEmpty()){
-            return grid[row][col].getCandidates();
-        }
-        else if (grid[row][col].getVal() == '-'){
-            for (char c = '1'; c <= '9'; c++){
-                SudokuConfig candidate = new SudokuConfig(this, c, row, col);
-                if (candidate.isValid(row, col)){
-                    grid[row][col].addCandidate(c);
-                }
-            }
-            return grid[row][col].getCandidates();
+        List<Character> candidates = new ArrayList<>();
+        for (int mask = board.candidates(row * board.geometry().dim() + col); mask != 0; mask &= mask - 1){
+            candidates.add(Geometry.symbol(SudokuBoard.digit(mask)));
         }
-        return new ArrayList<>();
+        return candidates;
     }
 
     /**
@@ -143,13 +132,7 @@ public class SudokuConfig {
      * @return whether the current row is valid or not.
      */
     public boolean rowCheck(int row){
-        Set<Character> uniqueSet = new HashSet<>();
-        for (SudokuCell c : grid[row]){
-            if (c.getVal() != '-' && !uniqueSet.add(c.getVal())){
-                return false;
-            }
-        }
-        return true;
+        return board.conflicts(row) == 0;
     }
 
     /**
@@ -158,16 +141,7 @@ public class SudokuConfig {
      * @return whether the current row is valid or not.
      */
     public boolean colCheck(int col){
-        Set<Character> uniqueSet = new HashSet<>();
-        int i = 0;
-        while (i < DIM){
-            char c = grid[i][col].getVal();
-            if (c != '-' && !uniqueSet.add(c)){
-                return false;
-            }
-            i++;
-        }
-        return true;
+        return board.conflicts(board.geometry().dim() + col) == 0;
     }
 
     /**
@@ -176,62 +150,75 @@ public class SudokuConfig {
      * @return whether the current box is valid or not.
      */
     public boolean boxCheck(int row, int col){
-        int absoluterow = (row / 3) * 3;
-        int absolutecol = (col / 3) * 3;
-        Set<Character> uniqueSet = new HashSet<>();
-        for (int r = absoluterow; r < absoluterow + 3; r++){
-            for (int c = absolutecol; c < absolutecol + 3; c++){
-                char val = grid[r][c].getVal();
-                if (val != '-' && !uniqueSet.add(val)){
-                    return false;
-                }
-            }
-        }
-        return true;
+        Geometry geometry = board.geometry();
+        return board.conflicts(2 * geometry.dim() + geometry.boxOf(row * geometry.dim() + col)) == 0;
     }
 
     /**
-     * A Sudoku Configuration is a solution if is valid and there are no empty cells.
+     * Describes every row, column, and box that repeats a digit, in one pass over the board.
      *
-     * @return whether the sudoku config is a solution or not.
-     */
-    public boolean isSolution(){
-        for (int r = 0; r < DIM; r++){
-            for (int c = 0; c < DIM; c++){
-                if (grid[r][c].getVal() == '-'){
-                    return false;
+     * @return the names of the invalid units, which is empty for a valid configuration.
+     */
+    public List<String> getInvalidUnits(){
+        List<String> invalid = new ArrayList<>();
+        Geometry geometry = board.geometry();
+        int dim = geometry.dim();
+        for (int u = 0; u < geometry.unitCount(); u++){
+            if (board.conflicts(u) != 0){
+                int index = u % dim;
+                if (u < dim){
+                    invalid.add("Row " + (index + 1));
+                }
+                else if (u < 2 * dim){
+                    invalid.add("Column " + (index + 1));
+                }
+                else{
+                    int row = (index / geometry.box()) * geometry.box();
+                    int col = (index % geometry.box()) * geometry.box();
+                    invalid.add("Box starting at (" + row + ", " + col + ")");
                 }
             }
         }
-        return true;
+        return invalid;
     }
 
     /**
-     * Gets the row the cursor is pointing at
-     * @return cursor row
+     * A Sudoku Configuration is a solution if is valid and there are no empty cells.
+     *
+     * @return whether the sudoku config is a solution or not.
      */
-    public int getCursorRow() {
-        return cursorRow;
+    public boolean isSolution(){
+        return board.isFull() && !board.hasConflicts();
     }
 
     /**
-     * Gets the column the cursor is pointing at
-     * @return cursor column
+     * Gets the primitive board behind this configuration
+     * @return the board
      */
-    public int getCursorCol() {
-        return cursorCol;
+    public SudokuBoard getBoard() {
+        return board;
     }
 
     /**
-     * Gets the grid that represents the Sudoku Puzzle
+     * Builds a cell grid that represents the Sudoku Puzzle. The grid is a snapshot,
+     * so changing its cells does not change this configuration.
      * @return the grid
      */
     public SudokuCell[][] getGrid() {
+        int dim = board.geometry().dim();
+        SudokuCell[][] grid = new SudokuCell[dim][dim];
+        for (int i = 0; i < dim; i++){
+            for (int j = 0; j < dim; j++){
+                int val = board.get(i, j);
+                grid[i][j] = new SudokuCell(i, j, val == 0 ? '-' : Geometry.symbol(val));
+                grid[i][j].setCandidates(getCellCandidates(i, j));
+            }
+        }
         return grid;
     }
 
     /**
-     * Two Sudoku Configurations are equal if they have the same grids.
+     * Two Sudoku Configurations are equal if they have the same boards.
      *
      * @param other the other Sudoku config.
      * @return whether the two sudoku configs are equal or not.
@@ -239,19 +226,19 @@ public class SudokuConfig {
     @Override
     public boolean equals(Object other){
         if (other instanceof SudokuConfig othersc){
-            return Arrays.deepEquals(this.grid, othersc.grid);
+            return this.board.equals(othersc.board);
         }
         return false;
     }
 
     /**
-     * The Hash Code of a Sudoku Configuration is the hash code of its grid.
+     * The Hash Code of a Sudoku Configuration is the hash code of its board.
      *
      * @return the hash code
      */
     @Override
     public int hashCode(){
-        return Arrays.deepHashCode(grid);
+        return board.hashCode();
     }
 
     /**
@@ -261,13 +248,6 @@ public class SudokuConfig {
      */
     @Override
     public String toString(){
-        StringBuilder result = new StringBuilder();
-        for (int r = 0; r < DIM; r++){
-            for (int c = 0; c < DIM; c++){
-                result.append(grid[r][c]).append(" ");
-            }
-            result.append("\n");
-        }
-        return result.toString();
+        return board.toString();
     }
 }
@@ -0,0 +1,329 @@
+package generator;
+
+import config.Geometry;
+import config.SudokuBoard;
+import config.SudokuConfig;
+import solver.CellSelector;
+import solver.MinimumRemainingValuesSelector;
+import solver.SudokuSolver;
+
+import java.io.*;
+import java.util.SplittableRandom;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Generates sudoku puzzles that have exactly one solution.
+ * <p>
+ * A puzzle starts as a random full grid, which is filled by backtracking over one board with the candidates
+ * of each cell tried in a random order. Clues are then removed in a random order, along with their symmetric
+ * partners, and put back whenever removing them would allow a second solution. Uniqueness is checked with
+ * {@link SudokuSolver#countSolutions(SudokuConfig, long)}, which stops at the second solution.
+ * <p>
+ * Puzzles are 9x9 unless the generator is given another {@link Geometry}.
+ * A generator keeps its own random source and is not thread safe; give each thread its own.
+ * <p>
+ * Usage: {@code SudokuGenerator <count> [output] [--size 9|16|25] [--clues n] [--symmetry none|rotational|mirror]
+ * [--threads n] [--seed s]}
+ *
+ * @author Dylan Sturr
+ */
+public class SudokuGenerator {
+    private final static int QUEUE_PER_THREAD = 64;
+    /** How many nodes per cell filling a grid may visit before it starts over */
+    private final static int RESTART_NODES = 8;
+
+    /**
+     * Which clues must be removed together, so the finished puzzle keeps a symmetric pattern.
+     */
+    public enum Symmetry {
+        /** Clues are removed one at a time */
+        NONE,
+        /** A clue and the one opposite it through the center are removed together */
+        ROTATIONAL,
+        /** A clue and its reflection across the middle column are removed together */
+        MIRROR;
+
+        /**
+         * Gets the cell paired with a cell under this symmetry
+         * @param geometry the size of the board
+         * @param cell the cell index
+         * @return the partner's index, which is the cell itself if it has no partner
+         */
+        int partner(Geometry geometry, int cell){
+            int dim = geometry.dim();
+            return switch (this){
+                case NONE -> cell;
+                case ROTATIONAL -> geometry.cells() - 1 - cell;
+                case MIRROR -> geometry.row(cell) * dim + dim - 1 - geometry.col(cell);
+            };
+        }
+    }
+
+    private final Geometry geometry;
+    private final SplittableRandom random;
+    private final SudokuSolver solver = new SudokuSolver();
+    private final CellSelector selector = new MinimumRemainingValuesSelector();
+
+    /**
+     * Creates a generator of 9x9 puzzles with a random seed.
+     */
+    public SudokuGenerator(){
+        this(Geometry.CLASSIC, new SplittableRandom());
+    }
+
+    /**
+     * Creates a generator of 9x9 puzzles that always produces the same sequence of puzzles for the same seed.
+     * @param seed the seed
+     */
+    public SudokuGenerator(long seed){
+        this(Geometry.CLASSIC, seed);
+    }
+
+    /**
+     * Creates a generator of puzzles of any size that always produces the same sequence of puzzles for the same seed.
+     * @param geometry the size of the puzzles
+     * @param seed the seed
+     */
+    public SudokuGenerator(Geometry geometry, long seed){
+        this(geometry, new SplittableRandom(seed));
+    }
+
+    private SudokuGenerator(Geometry geometry, SplittableRandom random){
+        this.geometry = geometry;
+        this.random = random;
+    }
+
+    /**
+     * Creates a random, completely filled, valid grid.
+     * @return the full grid
+     */
+    public SudokuBoard fullGrid(){
+        SudokuBoard board = new SudokuBoard(geometry);
+        fill(board);
+        return board;
+    }
+
+    /**
+     * Creates a puzzle with a unique solution.
+     * @param targetClues stop removing clues once there are this many or fewer, or 0 to keep removing
+     *                    clues until none can be removed
+     * @param symmetry which clues must be removed together
+     * @return the puzzle, which has more clues than the target if no further clue could be removed
+     */
+    public SudokuBoard generate(int targetClues, Symmetry symmetry){
+        SudokuBoard solution = fullGrid();
+        int cells = geometry.cells();
+        byte[] digits = new byte[cells];
+        for (int cell = 0; cell < cells; cell++){
+            digits[cell] = (byte) solution.get(cell);
+        }
+
+        int[] order = new int[cells];
+        for (int i = 0; i < cells; i++){
+            int j = random.nextInt(i + 1);
+            order[i] = order[j];
+            order[j] = i;
+        }
+
+        int clues = cells;
+        for (int cell : order){
+            if (clues <= targetClues){
+                break;
+            }
+            int partner = symmetry.partner(geometry, cell);
+            if (digits[cell] == 0){
+                continue;
+            }
+            byte kept = digits[cell];
+            byte keptPartner = digits[partner];
+            digits[cell] = 0;
+            digits[partner] = 0;
+            if (solver.countSolutions(new SudokuConfig(new SudokuBoard(digits)), 2) == 1){
+                clues -= cell == partner ? 1 : 2;
+            }
+            else{
+                digits[cell] = kept;
+                digits[partner] = keptPartner;
+            }
+        }
+        return new SudokuBoard(digits);
+    }
+
+    /**
+     * Fills every cell of an empty board, trying the candidates of each cell in a random order.
+     * <p>
+     * Like the solver's search, this is a loop over an explicit stack of cells, remaining candidates, and trail marks.
+     * An unlucky early choice can leave the search stuck for a very long time on large boards, so once it has
+     * visited {@link #RESTART_NODES} nodes per cell it undoes everything and starts again with fresh random choices.
+     */
+    private void fill(SudokuBoard board){
+        int[] cells = new int[geometry.cells() + 1];
+        int[] remaining = new int[cells.length];
+        int[] marks = new int[cells.length];
+        int start = board.mark();
+        long budget = (long) RESTART_NODES * geometry.cells();
+        long nodes = 0;
+        int depth = 0;
+        while (true){
+            int cell = selector.select(board);
+            if (cell < 0){
+                return;
+            }
+            if (++nodes > budget){
+                board.undo(start);
+                nodes = 0;
+                depth = 0;
+                continue;
+            }
+            cells[depth] = cell;
+            remaining[depth] = board.candidates(cell);
+            marks[depth] = board.mark();
+            depth++;
+
+            boolean placed = false;
+            while (!placed && depth > 0){
+                int top = depth - 1;
+                board.undo(marks[top]);
+                int mask = remaining[top];
+                if (mask == 0){
+                    depth--;
+                    continue;
+                }
+                int pick = random.nextInt(Integer.bitCount(mask));
+                int b = mask;
+                for (int i = 0; i < pick; i++){
+                    b &= b - 1;
+                }
+                b &= -b;
+                remaining[top] = mask & ~b;
+                placed = board.place(cells[top], SudokuBoard.digit(b));
+            }
+        }
+    }
+
+    /**
+     * Generates puzzles on a pool of threads, each with its own generator, and streams them to a writer
+     * one per line in the compact format. A bounded queue sits between the generators and the writer,
+     * so memory stays flat however many puzzles are asked for. If a generator fails, the others stop after
+     * their current puzzle, and the first failure is thrown once the puzzles already made are written.
+     * @param geometry the size of the puzzles
+     * @param count the number of puzzles
+     * @param targetClues the clue count to aim for, or 0 for minimal puzzles
+     * @param symmetry which clues must be removed together
+     * @param threads the number of generator threads
+     * @param seed the seed that every thread's generator is split from
+     * @param out where the puzzles are written
+     * @return the number of puzzles written
+     * @throws IOException if writing fails
+     * @throws InterruptedException if interrupted while waiting on the generators
+     * @throws RuntimeException the first exception a generator threw, if any did
+     */
+    public static long generate(Geometry geometry, long count, int targetClues, Symmetry symmetry, int threads, long seed, Writer out)
+            throws IOException, InterruptedException {
+        BlockingQueue<String> queue = new ArrayBlockingQueue<>(threads * QUEUE_PER_THREAD);
+        AtomicLong remaining = new AtomicLong(count);
+        AtomicLong running = new AtomicLong(threads);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        ExecutorService workers = Executors.newFixedThreadPool(threads);
+        SplittableRandom seeds = new SplittableRandom(seed);
+        for (int t = 0; t < threads; t++){
+            SudokuGenerator generator = new SudokuGenerator(geometry, seeds.split());
+            workers.execute(() -> {
+                try{
+                    while (remaining.getAndDecrement() > 0){
+                        queue.put(generator.generate(targetClues, symmetry).toLine());
+                    }
+                }
+                catch (InterruptedException ignored){
+                    Thread.currentThread().interrupt();
+                }
+                catch (RuntimeException | Error e){
+                    failure.compareAndSet(null, e);
+                    remaining.set(0);
+                }
+                finally{
+                    running.decrementAndGet();
+                }
+            });
+        }
+
+        long written = 0;
+        try{
+            while (running.get() > 0 || !queue.isEmpty()){
+                String line = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (line != null){
+                    out.write(line);
+                    out.write('\n');
+                    written++;
+                }
+            }
+            out.flush();
+        }
+        finally{
+            workers.shutdownNow();
+        }
+
+        Throwable thrown = failure.get();
+        if (thrown instanceof RuntimeException e){
+            throw e;
+        }
+        if (thrown instanceof Error e){
+            throw e;
+        }
+        return written;
+    }
+
+    /**
+     * Generates puzzles from the command line and reports the rate on standard error.
+     * @param args the puzzle count, an optional output file, and the options described in the class comment
+     */
+    public static void main(String[] args) {
+        long count = -1;
+        String output = null;
+        Geometry geometry = Geometry.CLASSIC;
+        int clues = 0;
+        Symmetry symmetry = Symmetry.NONE;
+        int threads = Runtime.getRuntime().availableProcessors();
+        long seed = System.nanoTime();
+        for (int i = 0; i < args.length; i++){
+            switch (args[i]){
+                case "--size" -> geometry = Geometry.ofDim(Integer.parseInt(args[++i]));
+                case "--clues" -> clues = Integer.parseInt(args[++i]);
+                case "--symmetry" -> symmetry = Symmetry.valueOf(args[++i].toUpperCase());
+                case "--threads" -> threads = Integer.parseInt(args[++i]);
+                case "--seed" -> seed = Long.parseLong(args[++i]);
+                default -> {
+                    if (count < 0){
+                        count = Long.parseLong(args[i]);
+                    }
+                    else{
+                        output = args[i];
+                    }
+                }
+            }
+        }
+        if (count < 0 || geometry == null){
+            System.err.println("Usage: SudokuGenerator <count> [output] [--size 9|16|25] [--clues n] [--symmetry none|rotational|mirror] "
+                    + "[--threads n] [--seed s]");
+            return;
+        }
+
+        long start = System.nanoTime();
+        long written;
+        try (Writer out = new BufferedWriter(output == null ? new OutputStreamWriter(System.out) : new FileWriter(output))){
+            written = generate(geometry, count, clues, symmetry, threads, seed, out);
+        }
+        catch (IOException | InterruptedException e){
+            System.err.println("Generation failed: " + e.getMessage());
+            return;
+        }
+        catch (RuntimeException e){
+            System.err.println("Generation failed: " + e);
+            return;
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.err.printf("Generated %d puzzles in %.2fs (%.1f puzzles/s)%n", written, seconds, written / seconds);
+    }
+}
@@ -0,0 +1,172 @@
+package main;
+
+import config.Geometry;
+import config.SudokuBoard;
+
+/**
+ * Finds the naked and hidden singles of every cell and unit of a board in one sweep.
+ * <p>
+ * Where {@link Candidates} walks one unit at a time through the unit's cell indices, a scan copies the board's
+ * candidate masks into a flat array and makes a single row-major pass over it. Each row is folded into its own
+ * once and twice masks, while every column and box keeps its own pair of masks in an array indexed by the column
+ * or box, so the inner loop over a row updates all of them side by side with no lookups. A digit is a hidden single
+ * in a unit when it is in the unit's once mask but not its twice mask. Naked singles are the cells whose mask has
+ * exactly one bit, found in a second straight pass.
+ * <p>
+ * The scan is plain Java rather than the incubating vector API. That API lives in a module every compile and every
+ * run of the program would have to add by hand, the GUI included, and a row is only 9 to 25 masks wide, which never
+ * fills the API's power-of-two vectors without a masked tail. The column and box loops are instead kept free of
+ * lookups and of dependencies between cells, which is the shape the JIT vectorizes on its own where the hardware
+ * allows.
+ * <p>
+ * Only questions about the whole board belong here. {@link config.SudokuConfig#getCellCandidates(int, int)} reads one
+ * cell's mask, and the checks in {@link Candidates} walk one unit, so a full scan would only add work to either.
+ * <p>
+ * A scan is a snapshot: it does not follow later changes to the board. It keeps its arrays between scans, so
+ * scanning does not allocate. It is not thread safe.
+ *
+ * @author Dylan Sturr
+ */
+public class CandidateScan {
+    private final Geometry geometry;
+    private final int[] masks;
+    private final int[] once;
+    private final int[] twice;
+    private final int[] naked;
+    private int nakedCount;
+    private boolean consistent;
+
+    /**
+     * Creates a scan for boards of one size
+     * @param geometry the size of the boards
+     */
+    public CandidateScan(Geometry geometry){
+        this.geometry = geometry;
+        masks = new int[geometry.cells()];
+        once = new int[geometry.unitCount()];
+        twice = new int[geometry.unitCount()];
+        naked = new int[geometry.cells()];
+    }
+
+    /**
+     * Scans a board, replacing the results of the previous scan.
+     * @param board the board, which must be the size this scan was created for
+     * @return this scan
+     */
+    public CandidateScan scan(SudokuBoard board){
+        int dim = geometry.dim();
+        int box = geometry.box();
+        int units = geometry.unitCount();
+        board.copyCandidates(masks);
+        for (int u = dim; u < units; u++){
+            once[u] = 0;
+            twice[u] = 0;
+        }
+
+        for (int r = 0; r < dim; r++){
+            int rowOnce = 0;
+            int rowTwice = 0;
+            int base = r * dim;
+            int boxes = 2 * dim + (r / box) * box;
+            for (int c = 0; c < dim; c++){
+                int m = masks[base + c];
+                rowTwice |= rowOnce & m;
+                rowOnce |= m;
+                twice[dim + c] |= once[dim + c] & m;
+                once[dim + c] |= m;
+                int b = boxes + c / box;
+                twice[b] |= once[b] & m;
+                once[b] |= m;
+            }
+            once[r] = rowOnce;
+            twice[r] = rowTwice;
+        }
+
+        consistent = true;
+        for (int u = 0; u < units; u++){
+            if ((once[u] | board.unitUsed(u)) != geometry.all()){
+                consistent = false;
+            }
+        }
+        nakedCount = 0;
+        for (int cell = 0; cell < geometry.cells(); cell++){
+            int m = masks[cell];
+            if ((m & (m - 1)) == 0){
+                if (m != 0){
+                    naked[nakedCount++] = cell;
+                }
+                else if (board.get(cell) == 0){
+                    consistent = false;
+                }
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Gets the size of the boards this scan reads
+     * @return the geometry
+     */
+    public Geometry geometry(){
+        return geometry;
+    }
+
+    /**
+     * Gets a cell's candidates as they were when the board was scanned
+     * @param cell the cell index
+     * @return the candidate mask
+     */
+    public int candidates(int cell){
+        return masks[cell];
+    }
+
+    /**
+     * Gets the digits that can only go in one cell of a unit
+     * @param unit the unit index, as numbered by {@link Geometry#unitCount()}
+     * @return the mask of hidden single digits
+     */
+    public int hiddenSingles(int unit){
+        return once[unit] & ~twice[unit];
+    }
+
+    /**
+     * Gets the number of cells with a single candidate
+     * @return the naked single count
+     */
+    public int nakedSingleCount(){
+        return nakedCount;
+    }
+
+    /**
+     * Gets one of the cells with a single candidate, in row-major order
+     * @param i the index of the naked single, below {@link #nakedSingleCount()}
+     * @return the cell index
+     */
+    public int nakedSingle(int i){
+        return naked[i];
+    }
+
+    /**
+     * Was the board still solvable as far as singles can tell? It is not if an empty cell has no candidates,
+     * or a unit has a digit that is neither placed nor a candidate anywhere in it.
+     * @return whether no contradiction was found
+     */
+    public boolean isConsistent(){
+        return consistent;
+    }
+
+    /**
+     * Finds the cell of a unit that holds a hidden single
+     * @param unit the unit index
+     * @param b the bit of the digit
+     * @return the cell index, or -1 if no cell of the unit has the digit as a candidate
+     */
+    public int find(int unit, int b){
+        for (int cell : geometry.unit(unit)){
+            if ((masks[cell] & b) != 0){
+                return cell;
+            }
+        }
+        return -1;
+    }
+}
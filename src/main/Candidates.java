@@ -1,9 +1,7 @@
 package main;
 
-import config.SudokuCell;
-import config.SudokuConfig;
-
-import java.util.*;
+import config.Geometry;
+import config.SudokuBoard;
 
 /**
  * A class used to hold extra methods for dealing with logical sudoku solving.
@@ -12,91 +10,53 @@ import java.util.*;
  */
 public class Candidates {
     /**
-     * Fills in any hidden singles found in a specified row of the grid
-     * @param grid the grid
+     * Finds any hidden singles in a specified row of the board
+     * @param board the board
      * @param row row to check
-     * @return a map that maps the column index of the cell to the necessary value
+     * @return an array that maps the column index of the cell to the necessary digit, or 0 for none
      */
-    public static Map<Integer, Character> rowCandidateCheck(SudokuCell[][] grid, int row){
-        int[] count = new int[9];
-        for (SudokuCell sc : grid[row]){
-            for (Character c : sc.getCandidates()){
-                count[c - '1']++;
-            }
-        }
-
-        Map<Integer, Character> modifications = new HashMap<>();
-        for (int i = 0; i < 9; i++){
-            if (count[i] == 1){
-                for (int j = 0; j < 9; j++){
-                    if (grid[row][j].getCandidates().contains((char)('1' + i))){
-                        modifications.put(j, (char)('1' + i));
-                        break;
-                    }
-                }
-            }
-        }
-        return modifications;
+    public static int[] rowCandidateCheck(SudokuBoard board, int row){
+        return unitCandidateCheck(board, board.geometry().unit(row));
     }
 
     /**
-     * Fills in a hidden single found in a specified column of the grid
-     * @param grid the grid
+     * Finds any hidden singles in a specified column of the board
+     * @param board the board
      * @param col column to check
-     * @return a map that maps the row index of the cell to the necessary value
+     * @return an array that maps the row index of the cell to the necessary digit, or 0 for none
      */
-    public static Map<Integer, Character> colCandidateCheck(SudokuCell[][] grid, int col){
-        int[] count = new int[9];
-        for (int i = 0; i < 9; i++){
-            for (Character c : grid[i][col].getCandidates()){
-                count[c - '1']++;
-            }
-        }
-
-        Map<Integer, Character> modifications = new HashMap<>();
-        for (int i = 0; i < 9; i++){
-            if (count[i] == 1){
-                for (int j = 0; j < 9; j++){
-                    if (grid[j][col].getCandidates().contains((char)('1' + i))){
-                        modifications.put(j, ((char)('1' + i)));
-                        break;
-                    }
-                }
-            }
-        }
-        return modifications;
+    public static int[] colCandidateCheck(SudokuBoard board, int col){
+        return unitCandidateCheck(board, board.geometry().unit(board.geometry().dim() + col));
     }
 
     /**
-     * Fills in a hidden single found in a specified box of the grid
-     * @param grid the grid
+     * Finds any hidden singles in a specified box of the board
+     * @param board the board
      * @param row box row bound
      * @param col box column bound
-     * @return a map that maps the row and column index of the cell to the necessary value
+     * @return an array that maps the position of the cell inside the box, in row-major order, to the necessary digit,
+     * or 0 for none
      */
-    public static Map<Integer[], Character> boxCandidateCheck(SudokuCell[][] grid, int row, int col){
-        int[] count = new int[9];
-        int rowbound = (row / 3) * 3;
-        int colbound = (col / 3) * 3;
-
-        for (int r = rowbound; r < rowbound + 3; r++){
-            for (int c = colbound; c < colbound + 3; c++){
-                for (Character ch : grid[r][c].getCandidates()){
-                    count[ch - '1']++;
-                }
-            }
-        }
+    public static int[] boxCandidateCheck(SudokuBoard board, int row, int col){
+        Geometry geometry = board.geometry();
+        int box = geometry.boxOf(row * geometry.dim() + col);
+        return unitCandidateCheck(board, geometry.unit(2 * geometry.dim() + box));
+    }
 
-        Map<Integer[], Character> modifications = new HashMap<>();
-        for (int i = 0; i < 9; i++){
-            if (count[i] == 1){
-                for (int r = rowbound; r < rowbound + 3; r++){
-                    for (int c = colbound; c < colbound + 3; c++){
-                        if (grid[r][c].getCandidates().contains((char)('1' + i))){
-                            modifications.put(new Integer[]{r, c}, (char)('1' + i));
-                            break;
-                        }
-                    }
+    /**
+     * Finds the digits that only have one possible cell in a unit.
+     * @param board the board
+     * @param unit the cells of the unit
+     * @return an array that maps the position of the cell in the unit to its hidden single, or 0 for none
+     */
+    private static int[] unitCandidateCheck(SudokuBoard board, int[] unit){
+        int[] modifications = new int[unit.length];
+        for (int singles = hiddenSingles(board, unit); singles != 0; singles &= singles - 1){
+            int b = singles & -singles;
+            for (int i = 0; i < unit.length; i++){
+                if ((board.candidates(unit[i]) & b) != 0){
+                    modifications[i] = SudokuBoard.digit(b);
+                    break;
                 }
             }
         }
@@ -104,40 +64,35 @@ public class Candidates {
     }
 
     /**
-     * Updates necessary candidates for the newly updated cell at the specified row and column position.
-     * @param config the sudoku config
-     * @param row cell's row to be updated
-     * @param col cell's column to be updated
-     * @param val the value to be placed at the given row and column position
+     * Gets the digits that are a candidate in exactly one cell of a unit.
+     * @param board the board
+     * @param unit the cells of the unit
+     * @return the mask of hidden single digits
      */
-    public static void configure(SudokuConfig config, int row, int col, char val, char check){
-
-        // remove any instance of the same candidate within the cell's row if a row was not solved for
-        if (check != 'r'){
-            for (SudokuCell sc : config.getGrid()[row]){
-                sc.getCandidates().removeIf(c -> c == val);
-            }
+    public static int hiddenSingles(SudokuBoard board, int[] unit){
+        int once = 0;
+        int twice = 0;
+        for (int cell : unit){
+            int mask = board.candidates(cell);
+            twice |= once & mask;
+            once |= mask;
         }
+        return once & ~twice;
+    }
 
-        // remove any instance of the same candidate within the cell's column if a column was not solved for
-        if (check != 'c'){
-            for (int i = 0; i < 9; i++){
-                config.getGrid()[i][col].getCandidates().removeIf(c -> c == val);
-            }
-        }
-
-        // remove any instance of the same candidate within the cell's box if a box was not solved for
-        if (check != 'b'){
-            int rowbound = (row / 3) * 3;
-            int colbound = (col / 3) * 3;
-
-            for (int r = rowbound; r < rowbound + 3; r++){
-                for (int c = colbound; c < colbound + 3; c++){
-                    config.getGrid()[r][c].getCandidates().removeIf(ch -> ch == val);
-                }
-            }
+    /**
+     * Gets the digits that still have a place in a unit, either because they are already placed there
+     * or because some empty cell of the unit can still hold them.
+     * @param board the board
+     * @param unit the cells of the unit
+     * @return the mask of covered digits, which is every digit unless the board has a contradiction
+     */
+    public static int coveredDigits(SudokuBoard board, int[] unit){
+        int covered = 0;
+        for (int cell : unit){
+            int val = board.get(cell);
+            covered |= val != 0 ? SudokuBoard.bit(val) : board.candidates(cell);
         }
-
-        config.getGrid()[row][col].setCandidates(new ArrayList<>());
+        return covered;
     }
 }
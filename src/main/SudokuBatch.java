@@ -0,0 +1,223 @@
+package main;
+
+import config.PuzzleReader;
+import config.SudokuBoard;
+import config.SudokuConfig;
+import solver.AdaptiveSolver;
+import solver.Budget;
+import solver.DancingLinksSolver;
+import solver.PortfolioSolver;
+import solver.SolveResult;
+import solver.SudokuEngine;
+import solver.SudokuSolver;
+
+import java.io.*;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A headless driver that solves every puzzle in a file on a pool of worker threads, without the GUI.
+ * <p>
+ * Puzzles are read one at a time through a {@link PuzzleReader}, in either puzzle format, and handed to the workers.
+ * Their futures go through a bounded queue to a single writer that prints the results in input order. Once the queue
+ * is full the reader waits for the writer, so only a fixed number of puzzles is ever held in memory, however large
+ * the file is.
+ * Solutions are written in the format of the first puzzle, either one line each or one line per row. Puzzles may be
+ * 9x9, 16x16, or 25x25. With a timeout, a puzzle that takes too long is written as timed out, so one
+ * adversarial puzzle cannot hold up the rest of the file. The portfolio engine races every engine on each puzzle,
+ * and the driver reports how often each one won. The adaptive engine instead learns over the run which engine is
+ * fastest for each kind of puzzle and solves each puzzle with that one, and the driver reports how often each one
+ * was chosen.
+ * <p>
+ * Usage: {@code SudokuBatch <input> [output] [--threads n] [--engine backtracking|dlx|portfolio|adaptive] [--timeout ms]}
+ *
+ * @author Dylan Sturr
+ */
+public class SudokuBatch {
+    private final static int QUEUE_PER_THREAD = 64;
+    private final static Future<String> END = CompletableFuture.completedFuture(null);
+    private final static String USAGE = "Usage: SudokuBatch <input> [output] [--threads n] "
+            + "[--engine backtracking|dlx|portfolio|adaptive] [--timeout ms]";
+
+    private final SudokuEngine engine;
+    private final int threads;
+    private final Duration timeout;
+    private final AtomicLong solved = new AtomicLong();
+    private long total;
+
+    /**
+     * Creates a batch driver
+     * @param engine the engine every worker solves with, which must be safe to share between threads
+     * @param threads the number of worker threads
+     */
+    public SudokuBatch(SudokuEngine engine, int threads){
+        this(engine, threads, null);
+    }
+
+    /**
+     * Creates a batch driver that gives up on any puzzle that takes too long
+     * @param engine the engine every worker solves with, which must be safe to share between threads
+     * @param threads the number of worker threads
+     * @param timeout how long each puzzle may take, or null for no limit
+     */
+    public SudokuBatch(SudokuEngine engine, int threads, Duration timeout){
+        this.engine = engine;
+        this.threads = threads;
+        this.timeout = timeout;
+    }
+
+    /**
+     * Solves every puzzle from the input and writes the results to the output in the same order.
+     * @param in the puzzles
+     * @param out where the solutions are written
+     * @throws IOException if reading or writing fails
+     * @throws InterruptedException if the driver is interrupted while waiting on the pipeline
+     */
+    public void run(PuzzleReader in, Writer out) throws IOException, InterruptedException {
+        ExecutorService workers = Executors.newFixedThreadPool(threads);
+        BlockingQueue<Future<String>> pending = new ArrayBlockingQueue<>(threads * QUEUE_PER_THREAD);
+        ExecutorService writer = Executors.newSingleThreadExecutor();
+        Future<?> written = writer.submit(() -> {
+            for (Future<String> result = pending.take(); result != END; result = pending.take()){
+                out.write(result.get());
+            }
+            out.flush();
+            return null;
+        });
+
+        try{
+            boolean lines = false;
+            while (in.hasNext()){
+                SudokuBoard puzzle = in.next();
+                if (total == 0){
+                    lines = in.isLineFormat();
+                }
+                boolean line = lines;
+                enqueue(pending, workers.submit(() -> solve(puzzle, line)), written);
+                total++;
+            }
+            enqueue(pending, END, written);
+            written.get();
+        }
+        catch (ExecutionException e){
+            throw new IOException("Could not write the solutions", e.getCause());
+        }
+        catch (UncheckedIOException e){
+            throw e.getCause();
+        }
+        finally{
+            workers.shutdownNow();
+            writer.shutdownNow();
+        }
+    }
+
+    /**
+     * Waits for room in the queue, giving up if the writer has stopped.
+     * @throws ExecutionException if the writer failed
+     */
+    private static void enqueue(BlockingQueue<Future<String>> pending, Future<String> result, Future<?> written)
+            throws InterruptedException, ExecutionException {
+        while (!pending.offer(result, 100, TimeUnit.MILLISECONDS)){
+            if (written.isDone()){
+                written.get();
+                throw new IllegalStateException("The writer stopped early");
+            }
+        }
+    }
+
+    /**
+     * Solves a single puzzle and formats the result.
+     * @param board the puzzle
+     * @param line whether to write the compact one line format
+     * @return the solution, or a line saying there is no solution or the puzzle timed out
+     */
+    private String solve(SudokuBoard board, boolean line){
+        SolveResult result = engine.solve(new SudokuConfig(board), timeout == null ? Budget.unlimited() : Budget.ofTimeout(timeout));
+        Optional<SudokuConfig> solution = result.getSolution();
+        if (solution.isPresent()){
+            solved.incrementAndGet();
+            return line ? solution.get().getBoard().toLine() + "\n" : solution.get() + "\n";
+        }
+        String text = result.getStatus() == SolveResult.Status.TIMED_OUT ? "Timed Out!" : "No Solution!";
+        return line ? text + "\n" : text + "\n\n";
+    }
+
+    /**
+     * Creates an engine from its name on the command line
+     * @param name backtracking, dlx, portfolio, or adaptive
+     * @return the engine
+     * @throws IllegalArgumentException if no engine has that name
+     */
+    static SudokuEngine engine(String name){
+        return switch (name){
+            case "backtracking" -> new SudokuSolver();
+            case "dlx" -> new DancingLinksSolver();
+            case "portfolio" -> new PortfolioSolver();
+            case "adaptive" -> new AdaptiveSolver();
+            default -> throw new IllegalArgumentException("Unknown engine " + name + ", expected backtracking, dlx, portfolio, or adaptive");
+        };
+    }
+
+    /**
+     * Runs the batch driver from the command line and reports the throughput on standard error.
+     * @param args the input file, an optional output file, and the optional thread count, engine, and timeout
+     */
+    public static void main(String[] args) {
+        String input = null;
+        String output = null;
+        int threads = Runtime.getRuntime().availableProcessors();
+        SudokuEngine engine = new SudokuSolver();
+        Duration timeout = null;
+        for (int i = 0; i < args.length; i++){
+            switch (args[i]){
+                case "--threads" -> threads = Integer.parseInt(args[++i]);
+                case "--engine" -> {
+                    try{
+                        engine = engine(args[++i]);
+                    }
+                    catch (IllegalArgumentException e){
+                        System.err.println(e.getMessage());
+                        System.err.println(USAGE);
+                        return;
+                    }
+                }
+                case "--timeout" -> timeout = Duration.ofMillis(Long.parseLong(args[++i]));
+                default -> {
+                    if (input == null){
+                        input = args[i];
+                    }
+                    else{
+                        output = args[i];
+                    }
+                }
+            }
+        }
+        if (input == null){
+            System.err.println(USAGE);
+            return;
+        }
+
+        SudokuBatch batch = new SudokuBatch(engine, threads, timeout);
+        long start = System.nanoTime();
+        try (PuzzleReader in = new PuzzleReader(Path.of(input));
+             Writer out = new BufferedWriter(output == null ? new OutputStreamWriter(System.out) : new FileWriter(output))){
+            batch.run(in, out);
+        }
+        catch (IOException | InterruptedException | IllegalArgumentException e){
+            System.err.println("Batch failed: " + e.getMessage());
+            return;
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.err.printf("Solved %d of %d puzzles in %.2fs (%.1f puzzles/s)%n",
+                batch.solved.get(), batch.total, seconds, batch.total / seconds);
+        if (engine instanceof PortfolioSolver portfolio){
+            System.err.println("Wins by strategy: " + portfolio.getWins());
+        }
+        else if (engine instanceof AdaptiveSolver adaptive){
+            System.err.println("Choices by strategy: " + adaptive.getChoices());
+        }
+    }
+}
@@ -1,5 +1,8 @@
 package main;
 
+import config.Geometry;
+import config.PuzzleReader;
+import config.SudokuBoard;
 import config.SudokuCell;
 import config.SudokuConfig;
 import javafx.application.Application;
@@ -15,11 +18,15 @@ import javafx.scene.layout.GridPane;
 import javafx.concurrent.Task;
 import javafx.stage.FileChooser;
 import javafx.stage.Stage;
+import solver.Budget;
+import solver.Propagator;
+import solver.SolveResult;
 import solver.SudokuSolver;
 
 import java.io.*;
 import java.nio.file.Paths;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * The Main Sudoku Class represents the Model, View, and Controller for the GUI of this Sudoku Solver project.
@@ -27,17 +34,27 @@ import java.util.*;
  * @author Dylan Sturr
  */
 public class SudokuMain extends Application {
+    /** The style added to the cells filled in by a solve or a hint */
+    private final static String SOLVED_STYLE = "; -fx-text-fill:rgb(30,165,215)";
+
     private final Label TopText = new Label("Welcome to Sudoku Solver!");
     private final Button loadButton = new Button("Load");
     private final Button solveButton = new Button("Solve");
     private final Button resetButton = new Button("Reset");
     private final Button hintButton = new Button("Hint");
+    private final Button cancelButton = new Button("Cancel");
+    private final Random random = new Random();
     // TODO: In the future, a button to show display a cell's candidates
     private GridPane gp;
     private BorderPane bp;
     private Button currentButton;
+    private Geometry geometry = Geometry.CLASSIC;
     private char[][] grid;
     private SudokuConfig solution;
+    private Button[][] buttons;
+    private Task<Void> solveTask;
+    private Budget budget;
+    private int version;
 
     /**
      * Creates the Sudoku solver GUI.
@@ -85,27 +102,29 @@ public class SudokuMain extends Application {
         solveButton.setStyle("-fx-font-size:16px");
         solveButton.setOnAction(event -> {
             if (solution == null){
-                TopText.setText("Working...");
-
-                // Solving occurs on a different thread from JavaFX to avoid interruptions of GUI text updates
-                Task<Void> solveTask = new Task<>() {
-                    @Override
-                    protected Void call() {
-                        Optional<SudokuConfig> sol = solve(false);
-                        sol.ifPresent(sc -> solution = sc);
-                        sol.ifPresent(sc -> showSolution(solution.getGrid(), grid));
-                        return null;
-                    }
-                };
-                new Thread(solveTask).start();
+                startSolve(false);
+            }
+            else if (isFull()){
+                TopText.setText("Already solved!");
             }
             else{
                 // If the solution has already been calculated, no need to calculate it again.
-                boolean textCheck = TopText.getText().equals("Solved!") || TopText.getText().equals("Already solved!");
-                TopText.setText(textCheck ? "Already solved!" : "Solved!");
-                if (!textCheck){
-                    showSolution(solution.getGrid(), grid);
-                }
+                showSolution(solution.getGrid(), grid);
+                TopText.setText("Solved!");
+            }
+        });
+
+        // initialize the cancel button, which is only enabled while a solve is running
+        fp.getChildren().add(cancelButton);
+        cancelButton.setMinHeight(50);
+        cancelButton.setMinWidth(75);
+        cancelButton.setStyle("-fx-font-size:16px");
+        cancelButton.setDisable(true);
+        cancelButton.setOnAction(event -> {
+            if (solveTask != null && solveTask.isRunning()){
+                budget.cancel();
+                solveTask.cancel();
+                TopText.setText("Cancelled.");
             }
         });
 
@@ -125,37 +144,7 @@ public class SudokuMain extends Application {
         hintButton.setMinHeight(50);
         hintButton.setMinWidth(75);
         hintButton.setStyle("-fx-font-size:16px");
-        hintButton.setOnAction(event -> {
-            // TODO: Have tiles revealed from a hint be the same blue color that appears after clicking solve.
-            // TODO: If the hint button finds no solution, it should hold this value instead of keeping solution null.
-            //  This is so the solve button doesn't need to recheck if pressed second. Vice versa applies.
-            Random rand = new Random();
-            Optional<SudokuConfig> sol = solve(true);
-            sol.ifPresent(sc -> solution = sc);
-            int row = rand.nextInt(9);
-            int col = rand.nextInt(9);
-            boolean solved = true;
-
-            // I cannot tell you how much it annoys me that I have to write this
-            for (int i = 0; i < 9; i++){
-                for (int j = 0; j < 9; j++){
-                    if (grid[i][j] == '-') {
-                        solved = false;
-                        break;
-                    }
-                }
-            }
-
-            while (grid[row][col] != '-' && !solved){
-                row = rand.nextInt(9);
-                col = rand.nextInt(9);
-            }
-
-            if (sol.isPresent()){
-                grid[row][col] = solution.getGrid()[row][col].getVal();
-                makeSudokuGrid(grid);
-            }
-        });
+        hintButton.setOnAction(event -> hint());
 
 
         // Put all the elements together
@@ -171,6 +160,167 @@ public class SudokuMain extends Application {
         stage.show();
     }
 
+    /**
+     * Switches the buttons between their idle state and their state while a solve is running.
+     * @param solving whether a solve has just started
+     */
+    private void setSolving(boolean solving){
+        solveButton.setDisable(solving);
+        hintButton.setDisable(solving);
+        cancelButton.setDisable(!solving);
+    }
+
+    /**
+     * Solves the puzzle on screen on a background thread, so the GUI stays responsive. The solution is kept
+     * until the puzzle changes, so later solves and hints reuse it. A result that arrives after the puzzle
+     * has changed is thrown away.
+     * @param hint whether the solve is for a hint, which reveals one cell instead of the whole solution
+     */
+    private void startSolve(boolean hint){
+        // The snapshot is taken here on the FX thread, so edits made while the task runs cannot race with it
+        SudokuConfig sc;
+        try{
+            sc = SudokuConfig.fromGrid(grid);
+        }
+        catch(IllegalArgumentException e){
+            TopText.setText("Error: " + e.getMessage());
+            return;
+        }
+        TopText.setText("Working...");
+        int state = version;
+        // The budget lets the cancel button stop the search itself, not just the task.
+        Budget taskBudget = Budget.unlimited();
+        budget = taskBudget;
+        solveTask = new Task<>() {
+            @Override
+            protected Void call() {
+                Optional<SudokuConfig> sol = solve(sc, hint, taskBudget);
+                Platform.runLater(() -> {
+                    if (!isCancelled() && state == version && sol.isPresent()){
+                        solution = sol.get();
+                        if (hint){
+                            revealFromSolution();
+                        }
+                        else{
+                            showSolution(solution.getGrid(), grid);
+                        }
+                    }
+                });
+                return null;
+            }
+        };
+        solveTask.setOnSucceeded(e -> setSolving(false));
+        solveTask.setOnFailed(e -> setSolving(false));
+        solveTask.setOnCancelled(e -> setSolving(false));
+        setSolving(true);
+        new Thread(solveTask).start();
+    }
+
+    /**
+     * The action that occurs when the hint button is pushed. It reveals the cell that the next logical step fills in,
+     * such as a naked or hidden single, and says which technique found it. If logic gets stuck, a random empty cell
+     * is revealed from the solution instead, which is solved in the background the first time it is needed.
+     */
+    private void hint(){
+        SudokuConfig sc;
+        try{
+            sc = SudokuConfig.fromGrid(grid);
+        }
+        catch(IllegalArgumentException e){
+            TopText.setText("Error: " + e.getMessage());
+            return;
+        }
+        if (sc.getBoard().isFull()){
+            TopText.setText("Already solved!");
+            return;
+        }
+        List<String> invalid = sc.getInvalidUnits();
+        if (!invalid.isEmpty()){
+            TopText.setText(invalidText(invalid));
+            return;
+        }
+
+        Propagator.Deduction deduction = new Propagator(Propagator.Level.FULL).nextDeduction(sc.getBoard());
+        if (deduction != null){
+            int row = deduction.cell() / geometry.dim();
+            int col = deduction.cell() % geometry.dim();
+            reveal(row, col, Geometry.symbol(deduction.digit()));
+            TopText.setText("Hint: " + deduction.technique() + " at row " + (row + 1) + ", column " + (col + 1));
+        }
+        else if (solution != null){
+            revealFromSolution();
+        }
+        else{
+            startSolve(true);
+        }
+    }
+
+    /**
+     * Reveals a random empty cell from the solution.
+     */
+    private void revealFromSolution(){
+        int dim = geometry.dim();
+        List<Integer> empty = new ArrayList<>();
+        for (int r = 0; r < dim; r++){
+            for (int c = 0; c < dim; c++){
+                if (grid[r][c] == '-'){
+                    empty.add(r * dim + c);
+                }
+            }
+        }
+        if (empty.isEmpty()){
+            TopText.setText("Already solved!");
+            return;
+        }
+        int cell = empty.get(random.nextInt(empty.size()));
+        reveal(cell / dim, cell % dim, Geometry.symbol(solution.getBoard().get(cell)));
+        TopText.setText("Hint given!");
+    }
+
+    /**
+     * Fills in one cell, redrawing only its button, in the same color as the cells filled in by a solve.
+     * @param row the cell's row
+     * @param col the cell's column
+     * @param symbol the digit's symbol
+     */
+    private void reveal(int row, int col, char symbol){
+        grid[row][col] = symbol;
+        buttons[row][col].setText(String.valueOf(symbol));
+        buttons[row][col].setStyle(cellStyle() + SOLVED_STYLE);
+    }
+
+    /**
+     * Are there no empty cells left on screen?
+     * @return whether every cell is filled in
+     */
+    private boolean isFull(){
+        for (char[] row : grid){
+            for (char cell : row){
+                if (cell == '-'){
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Forgets the solution of the previous puzzle, after the puzzle on screen has changed.
+     */
+    private void puzzleChanged(){
+        version++;
+        solution = null;
+    }
+
+    /**
+     * Describes the units whose clues break the rules.
+     * @param invalid the names of the units
+     * @return the error message
+     */
+    private static String invalidText(List<String> invalid){
+        return "Error: " + String.join(", ", invalid) + (invalid.size() == 1 ? " is" : " are") + " invalid.";
+    }
+
     /**
      * Keeps track of the button that gets pressed, so that the key listener knows where to place the number.
      * @param button the button that was pushed
@@ -190,14 +340,17 @@ public class SudokuMain extends Application {
             int col = GridPane.getColumnIndex(currentButton.getParent());
             int subrow = GridPane.getRowIndex(currentButton);
             int subcol = GridPane.getColumnIndex(currentButton);
-            int absoluterow = row * 3 + subrow;
-            int absolutecol = col * 3 + subcol;
-            if (text.matches("[1-9]")){
-                grid[absoluterow][absolutecol] = text.charAt(0);
-                currentButton.setText(text);
+            int absoluterow = row * geometry.box() + subrow;
+            int absolutecol = col * geometry.box() + subcol;
+            int digit = text.length() == 1 ? Geometry.digit(text.charAt(0)) : -1;
+            if (digit > 0 && digit <= geometry.dim()){
+                puzzleChanged();
+                grid[absoluterow][absolutecol] = Geometry.symbol(digit);
+                currentButton.setText(String.valueOf(Geometry.symbol(digit)));
                 currentButton = null;
             }
             else if (text.isEmpty()){
+                puzzleChanged();
                 grid[absoluterow][absolutecol] = '-';
                 currentButton.setText("");
                 currentButton = null;
@@ -206,13 +359,14 @@ public class SudokuMain extends Application {
     }
 
     /**
-     * Initializes the grid as a 9x9 2D Array of empty cells. '-'
+     * Initializes the grid as a 2D Array of empty cells. '-', the size of the last loaded puzzle or 9x9 at first
      */
     private void initGrid(){
-        grid = new char[9][9];
-        solution = null;
-        for (int i = 0; i < 9; i++){
-            for (int j = 0; j < 9; j++){
+        int dim = geometry.dim();
+        grid = new char[dim][dim];
+        puzzleChanged();
+        for (int i = 0; i < dim; i++){
+            for (int j = 0; j < dim; j++){
                 grid[i][j] = '-';
             }
         }
@@ -223,18 +377,21 @@ public class SudokuMain extends Application {
      * @param grid the grid of the Sudoku puzzle
      */
     private void makeSudokuGrid(char[][] grid){
+        int n = geometry.box();
+        buttons = new Button[geometry.dim()][geometry.dim()];
         gp = new GridPane();
-        for (int r = 0; r < 3; r++){
-            for (int c = 0; c < 3; c++){
+        for (int r = 0; r < n; r++){
+            for (int c = 0; c < n; c++){
                 GridPane box = new GridPane();
-                for (int row = 0; row < 3; row++){
-                    for (int col = 0; col < 3; col++){
-                        String buttonText = String.valueOf(grid[r * 3 + row][c * 3 + col]);
+                for (int row = 0; row < n; row++){
+                    for (int col = 0; col < n; col++){
+                        String buttonText = String.valueOf(grid[r * n + row][c * n + col]);
                         Button button = new Button(buttonText.equals("-") ? "" : buttonText);
-                        button.setStyle("-fx-font-size:16px; -fx-font-weight:bold");
-                        button.setMinSize(50, 50);
+                        button.setStyle(cellStyle());
+                        button.setMinSize(cellSize(), cellSize());
                         box.add(button, col, row);
                         button.setOnAction(e -> setClicked(button));
+                        buttons[r * n + row][c * n + col] = button;
                     }
                 }
                 gp.add(box, c, r);
@@ -246,162 +403,128 @@ public class SudokuMain extends Application {
     }
 
     /**
-     * Recreates the grid GUI to display the solution to the given Sudoku puzzle
+     * Displays the solution to the given Sudoku puzzle, redrawing only the buttons of the cells it fills in.
+     * Must be called on the JavaFX thread.
      * @param solution the solution to the Sudoku puzzle
      * @param grid the initial grid of the Sudoku puzzle
      */
     private void showSolution(SudokuCell[][] solution, char[][] grid){
-        Platform.runLater(() -> {
-            gp = new GridPane();
-            for (int r = 0; r < 3; r++){
-                for (int c = 0; c < 3; c++){
-                    GridPane box = new GridPane();
-                    for (int row = 0; row < 3; row++){
-                        for (int col = 0; col < 3; col++){
-                            String buttonText = String.valueOf(solution[r * 3 + row][c * 3 + col]);
-                            Button button = new Button(buttonText.equals("-") ? "" : buttonText);
-                            if (solution[r * 3 + row][c * 3 + col].getVal() == grid[r * 3 + row][c * 3 + col]){
-                                button.setStyle("-fx-font-size:16px; -fx-font-weight:bold");
-                            }
-                            else{
-                                button.setStyle("-fx-font-size:16px; -fx-font-weight:bold; -fx-text-fill:rgb(30,165,215)");
-                            }
-                            grid[r * 3 + row][c * 3 + col] = solution[r * 3 + row][c * 3 + col].getVal();
-                            button.setMinSize(50, 50);
-                            box.add(button, col, row);
-                            button.setOnAction(e -> setClicked(button));
-                        }
-                    }
-                    gp.add(box, c, r);
+        int dim = geometry.dim();
+        for (int r = 0; r < dim; r++){
+            for (int c = 0; c < dim; c++){
+                char val = solution[r][c].getVal();
+                if (grid[r][c] != val){
+                    reveal(r, c, val);
                 }
             }
-            gp.setGridLinesVisible(true);
-            gp.setAlignment(Pos.CENTER);
-            bp.setCenter(gp);
-        });
+        }
     }
 
     /**
-     * The action that occurs when the load file is pushed. It loads a sudoku puzzle given a valid file.
+     * Gets the width of a cell's button, which shrinks for boards larger than 9x9 so they still fit on screen
+     * @return the width in pixels
+     */
+    private int cellSize(){
+        return geometry.dim() <= 9 ? 50 : 32;
+    }
+
+    /**
+     * Gets the style of a cell's button, with a smaller font for boards larger than 9x9
+     * @return the style
+     */
+    private String cellStyle(){
+        return "-fx-font-size:" + (geometry.dim() <= 9 ? 16 : 12) + "px; -fx-font-weight:bold";
+    }
+
+    /**
+     * The action that occurs when the load file is pushed. It loads the first sudoku puzzle of a valid file,
+     * which may be in either the grid or the one line format, and of any size the puzzle reader accepts.
      * @param file the file to be loaded
      */
     private void load(File file){
-        // TODO: in the future, check to make sure files follow the valid sudoku syntax.
-        grid = new char[9][9];
         try{
-            try (Scanner in = new Scanner(file)){
-                while (in.hasNextLine()){
-                    for (int i = 0; i < 9; i++) {
-                        String line = in.nextLine();
-                        String[] fields = line.split(" ");
-                        for (int j = 0; j < fields.length; j++){
-                            grid[i][j] = fields[j].charAt(0);
-                        }
-                    }
+            SudokuBoard board = PuzzleReader.readFirst(file.toPath());
+            geometry = board.geometry();
+            int dim = geometry.dim();
+            grid = new char[dim][dim];
+            puzzleChanged();
+            for (int i = 0; i < dim; i++){
+                for (int j = 0; j < dim; j++){
+                    int val = board.get(i, j);
+                    grid[i][j] = val == 0 ? '-' : Geometry.symbol(val);
                 }
             }
             makeSudokuGrid(grid);
+            bp.getScene().getWindow().sizeToScene();
             TopText.setText("Loaded " + file.getName() + "!");
         }
-        catch(FileNotFoundException ignored){
-            System.err.println("File could not be found!");
+        catch(IOException | IllegalArgumentException e){
+            TopText.setText("Error: " + file.getName() + " is not a valid puzzle.");
+            System.err.println(e.getMessage());
         }
     }
 
     /**
-     * The action that occurs when the solve button is pushed. This method is broken down into four steps,
+     * The action that occurs when the solve button is pushed. This method is broken down into three steps,
      * which are documented as the code goes on.
      *
+     * @param sc a snapshot of the puzzle on screen, taken on the FX thread
      * @param hint whether the function call was used for hint giving purposes or not
+     * @param budget stops the search when it is cancelled
      * @return the solution
      */
-    private Optional<SudokuConfig> solve(boolean hint){
-        try{
-            // write the grid to an output file, custom.txt, so a Sudoku Configuration can be made from it later
-            try (BufferedWriter fileWriter = new BufferedWriter(new FileWriter("data/custom.txt"))){
-                for (int r = 0; r < 9; r++){
-                    for (int c = 0; c < 9; c++){
-                        fileWriter.write(grid[r][c]);
-                        fileWriter.write(" ");
-                    }
-                    fileWriter.newLine();
-                }
-            }
+    private Optional<SudokuConfig> solve(SudokuConfig sc, boolean hint, Budget budget){
+        SudokuBoard board = sc.getBoard();
+        int dim = board.geometry().dim();
 
-            // checks for a puzzle that is automatically invalid due to violating sudoku rules
-            SudokuConfig sc = new SudokuConfig("data/custom.txt");
-            for (int r = 0; r < 9; r++){
-                if (!sc.rowCheck(r)){
-                    int finalR = r;
-                    Platform.runLater(() -> TopText.setText("Error: Row " + (finalR + 1) + " is invalid."));
-                    return Optional.empty();
-                }
-                for (int c = 0; c < 9; c++){
-                    if (!sc.colCheck(c)){
-                        int finalC = c;
-                        Platform.runLater(() -> TopText.setText("Error: Column " + (finalC + 1) + " is invalid."));
-                        return Optional.empty();
-                    }
-                    if (!sc.boxCheck(r, c)){
-                        int finalR = r;
-                        int finalC = c;
-                        Platform.runLater(() -> TopText.setText("Error: Box starting at (" + finalR + ", " + finalC + ") is invalid."));
-                        return Optional.empty();
-                    }
-                }
-            }
+        // checks for a puzzle that is automatically invalid due to violating sudoku rules
+        List<String> invalid = sc.getInvalidUnits();
+        if (!invalid.isEmpty()){
+            Platform.runLater(() -> TopText.setText(invalidText(invalid)));
+            return Optional.empty();
+        }
 
-            // checks for puzzles that are unsolvable due to lack of information, like not enough values
-            int[] count = new int[9];
-            int sum;
-            int j = 0;
-            for (int r = 0; r < 9; r++) {
-                for (int c = 0; c < 9; c++) {
-                    if (Character.isDigit(grid[r][c])) {
-                        int index = grid[r][c] - '1';
-                        if (index >= 0 && index < 9) {
-                            count[index]++;
-                        }
-                    }
-                }
+        // checks for puzzles that are unsolvable due to lack of information, like not enough values
+        int[] count = new int[dim];
+        int sum;
+        int j = 0;
+        for (int cell = 0; cell < board.geometry().cells(); cell++){
+            if (board.get(cell) != 0){
+                count[board.get(cell) - 1]++;
             }
-            for (int i : count){
-                if (i == 0){
-                    j++;
-                }
-                if (j == 2){
-                    Platform.runLater(() -> TopText.setText("Error: Not enough unique values"));
-                    return Optional.empty();
-                }
+        }
+        for (int i : count){
+            if (i == 0){
+                j++;
             }
-            sum = Arrays.stream(count).sum();
-            if (sum < 16){
-                Platform.runLater(() -> TopText.setText("Error: Need at least 16 values, there are only " + sum));
+            if (j == 2){
+                Platform.runLater(() -> TopText.setText("Error: Not enough unique values"));
                 return Optional.empty();
             }
-
-            // Solve the puzzle, unless it is already solved
-            if (sc.isSolution()){
-                Platform.runLater(() -> TopText.setText("Already solved!"));
-            }
-            else{
-                SudokuSolver solver = new SudokuSolver();
-                sc = solver.soften(sc); // partial logical solver
-                Optional<SudokuConfig> solution = solver.solve(sc); // solver using backtracking
-                if (solution.isPresent()){
-                    Platform.runLater(() -> TopText.setText(hint ? "Hint given!" : "Solved!"));
-                    return solution;
-                }
-                else{
-                    Platform.runLater(() -> TopText.setText("No Solution!"));
-                    return Optional.empty();
-                }
-            }
         }
-        catch(IOException ignored){
-            System.err.println("Something went wrong!");
+        sum = Arrays.stream(count).sum();
+        if (board.geometry() == Geometry.CLASSIC && sum < 16){
+            Platform.runLater(() -> TopText.setText("Error: Need at least 16 values, there are only " + sum));
+            return Optional.empty();
+        }
+
+        // Solve the puzzle, unless it is already solved
+        if (sc.isSolution()){
+            Platform.runLater(() -> TopText.setText("Already solved!"));
+            return Optional.empty();
         }
-        return Optional.empty();
+        SudokuSolver solver = new SudokuSolver();
+        sc = solver.soften(sc); // partial logical solver
+        // solver using backtracking on every core
+        SolveResult result = solver.solveParallel(sc, ForkJoinPool.commonPool(), budget);
+        String text = switch (result.getStatus()){
+            case SOLVED -> hint ? "Hint given!" : "Solved!";
+            case CANCELLED -> "Cancelled.";
+            case TIMED_OUT -> "Timed out!";
+            default -> "No Solution!";
+        };
+        Platform.runLater(() -> TopText.setText(text));
+        return result.getSolution();
     }
 
     /**
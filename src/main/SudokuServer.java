@@ -0,0 +1,336 @@
+package main;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import config.Geometry;
+import config.PuzzleReader;
+import config.SudokuBoard;
+import config.SudokuConfig;
+import solver.Budget;
+import solver.SolveResult;
+import solver.SolveStats;
+import solver.SolverMetrics;
+import solver.SudokuEngine;
+import solver.SudokuSolver;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A local HTTP service that solves puzzles, for programs that embed the solver behind their own service.
+ * <p>
+ * {@code POST /solve} takes one puzzle per line in the compact format, 81 cells for a 9x9 board, and answers with one
+ * line per puzzle in the same order: the solution, "No Solution!", or "Timed Out!", as {@link SudokuBatch} writes them.
+ * The query may set a budget for the request, {@code ?timeout=ms} for the whole request and {@code &nodes=n} for each
+ * puzzle in it; the clock starts when the request is accepted, so time spent queueing counts. {@code GET /metrics}
+ * answers with the service's counters and the solve latencies, one {@code name value} pair per line.
+ * <p>
+ * Requests are handled on virtual threads, which only parse, wait, and write, so any number of clients can be
+ * connected at once. The solving itself is done by a fixed pool of platform threads sharing one queue of puzzles.
+ * The puzzles of every request go into the queue one by one, and each solver thread takes a single puzzle at a time,
+ * so the puzzles of one large request are spread over every thread, and a hard puzzle only holds up its own thread.
+ * The queue holds a bounded number of puzzles; a request that would go over the bound is turned away with 503 and a
+ * Retry-After header rather than left to wait, so a client can back off.
+ * <p>
+ * The service only listens on the loopback address.
+ * <p>
+ * Usage: {@code SudokuServer [--port n] [--threads n] [--queue n] [--engine backtracking|dlx|portfolio|adaptive]
+ * [--timeout ms]}
+ *
+ * @author Dylan Sturr
+ */
+public class SudokuServer {
+    /** The longest line a puzzle can take, a 25x25 board and its line break */
+    private final static int MAX_LINE = Geometry.MAX_CELLS + 2;
+    private final static String TEXT = "text/plain; charset=utf-8";
+    private final static String USAGE = "Usage: SudokuServer [--port n] [--threads n] [--queue n] "
+            + "[--engine backtracking|dlx|portfolio|adaptive] [--timeout ms]";
+
+    private final SudokuEngine engine;
+    private final int threads;
+    private final int capacity;
+    private final Duration timeout;
+    private final Semaphore room;
+    private final BlockingQueue<Job> queue = new LinkedBlockingQueue<>();
+    private final SolverMetrics metrics = SolverMetrics.forName(getClass().getSimpleName());
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder puzzles = new LongAdder();
+    private final LongAdder requestNanos = new LongAdder();
+    private HttpServer server;
+    private ExecutorService solvers;
+
+    /**
+     * A puzzle waiting to be solved, with the budget of the request it came in and where its result goes.
+     */
+    private record Job(SudokuBoard puzzle, Budget budget, CompletableFuture<SolveResult> result){}
+
+    /**
+     * Creates a service, which does not listen until it is started
+     * @param engine the engine the solver threads share, which must be safe to share between threads
+     * @param threads the number of solver threads
+     * @param capacity the most puzzles that may be queued or being solved at once
+     * @param timeout how long a request may take unless it asks for another limit, or null for no limit
+     */
+    public SudokuServer(SudokuEngine engine, int threads, int capacity, Duration timeout){
+        this.engine = engine;
+        this.threads = threads;
+        this.capacity = capacity;
+        this.timeout = timeout;
+        this.room = new Semaphore(capacity);
+    }
+
+    /**
+     * Starts the solver threads and starts listening
+     * @param port the port on the loopback address, or 0 for any free port
+     * @return the port the service is listening on
+     * @throws IOException if the port cannot be bound
+     */
+    public int start(int port) throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.createContext("/solve", this::solve);
+        server.createContext("/metrics", this::metrics);
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        solvers = Executors.newFixedThreadPool(threads);
+        for (int i = 0; i < threads; i++){
+            solvers.execute(this::work);
+        }
+        server.start();
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Stops listening, stops the solver threads once they finish their current puzzle, and answers every puzzle
+     * still queued as cancelled.
+     */
+    public void stop(){
+        server.stop(0);
+        solvers.shutdownNow();
+        List<Job> left = new ArrayList<>();
+        queue.drainTo(left);
+        for (Job job : left){
+            job.result().complete(new SolveResult(SolveResult.Status.CANCELLED, null, SolveStats.NONE));
+            room.release();
+        }
+    }
+
+    /**
+     * Solves puzzles from the queue, one at a time, until the thread is interrupted.
+     */
+    private void work(){
+        try{
+            while (true){
+                Job job = queue.take();
+                try{
+                    job.result().complete(metrics.record(engine.solve(new SudokuConfig(job.puzzle()), job.budget())));
+                }
+                catch (RuntimeException e){
+                    job.result().completeExceptionally(e);
+                }
+                finally{
+                    room.release();
+                }
+            }
+        }
+        catch (InterruptedException ignored){
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Handles {@code POST /solve}: parses the puzzles, queues them if there is room, and writes their results.
+     */
+    private void solve(HttpExchange exchange) throws IOException {
+        long start = System.nanoTime();
+        try (exchange){
+            if (!exchange.getRequestMethod().equals("POST")){
+                send(exchange, 405, "Puzzles must be POSTed\n");
+                return;
+            }
+            requests.increment();
+
+            Budget budget;
+            List<SudokuBoard> boards = new ArrayList<>();
+            try{
+                budget = budget(exchange.getRequestURI());
+                int limit = (int) Math.min((long) capacity * MAX_LINE, Integer.MAX_VALUE - 16);
+                byte[] body = exchange.getRequestBody().readNBytes(limit + 1);
+                if (body.length > limit){
+                    send(exchange, 413, "At most " + capacity + " puzzles fit in a request\n");
+                    return;
+                }
+                String[] lines = new String(body, StandardCharsets.UTF_8).split("\r?\n");
+                for (int i = 0; i < lines.length; i++){
+                    if (!lines[i].isBlank() && !lines[i].startsWith("#")){
+                        try{
+                            boards.add(PuzzleReader.parse(lines[i].strip()));
+                        }
+                        catch (IllegalArgumentException e){
+                            // Each line is parsed on its own, so the reader's line number is always 1
+                            throw new IllegalArgumentException(e.getMessage().replaceFirst("^Line \\d+", "Line " + (i + 1)), e);
+                        }
+                    }
+                }
+            }
+            catch (IllegalArgumentException e){
+                send(exchange, 400, e.getMessage() + "\n");
+                return;
+            }
+            if (boards.isEmpty()){
+                send(exchange, 400, "No puzzles given\n");
+                return;
+            }
+            if (boards.size() > capacity){
+                send(exchange, 413, "At most " + capacity + " puzzles fit in a request\n");
+                return;
+            }
+            if (!room.tryAcquire(boards.size())){
+                rejected.increment();
+                exchange.getResponseHeaders().set("Retry-After", "1");
+                send(exchange, 503, "Too many puzzles queued, try again later\n");
+                return;
+            }
+
+            puzzles.add(boards.size());
+            List<CompletableFuture<SolveResult>> results = new ArrayList<>(boards.size());
+            for (SudokuBoard board : boards){
+                CompletableFuture<SolveResult> result = new CompletableFuture<>();
+                results.add(result);
+                queue.add(new Job(board, budget, result));
+            }
+            StringBuilder out = new StringBuilder(boards.size() * (boards.get(0).geometry().cells() + 1));
+            try{
+                for (CompletableFuture<SolveResult> result : results){
+                    SolveResult solved = result.join();
+                    out.append(solved.getSolution().map(sc -> sc.getBoard().toLine())
+                            .orElse(solved.getStatus() == SolveResult.Status.TIMED_OUT
+                                    || solved.getStatus() == SolveResult.Status.CANCELLED ? "Timed Out!" : "No Solution!"));
+                    out.append('\n');
+                }
+            }
+            catch (CompletionException e){
+                budget.cancel();
+                send(exchange, 500, "Solving failed: " + e.getCause() + "\n");
+                return;
+            }
+            send(exchange, 200, out.toString());
+        }
+        finally{
+            requestNanos.add(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Reads the budget of a request from its query, falling back on the service's timeout.
+     * @throws IllegalArgumentException if a limit is not a number
+     */
+    private Budget budget(URI uri){
+        Duration limit = timeout;
+        long nodes = 0;
+        String query = uri.getRawQuery();
+        if (query != null){
+            for (String pair : query.split("&")){
+                int equals = pair.indexOf('=');
+                String name = equals < 0 ? pair : pair.substring(0, equals);
+                String value = equals < 0 ? "" : pair.substring(equals + 1);
+                try{
+                    switch (name){
+                        case "timeout" -> limit = Duration.ofMillis(Long.parseLong(value));
+                        case "nodes" -> nodes = Long.parseLong(value);
+                        default -> {}
+                    }
+                }
+                catch (NumberFormatException e){
+                    throw new IllegalArgumentException("The " + name + " must be a number, not " + value, e);
+                }
+            }
+        }
+        return new Budget(limit, nodes);
+    }
+
+    /**
+     * Handles {@code GET /metrics}.
+     */
+    private void metrics(HttpExchange exchange) throws IOException {
+        try (exchange){
+            long served = requests.sum();
+            String text = "requests " + served + "\n"
+                    + "rejected " + rejected.sum() + "\n"
+                    + "puzzles " + puzzles.sum() + "\n"
+                    + "queued " + queue.size() + "\n"
+                    + "in_flight " + (capacity - room.availablePermits()) + "\n"
+                    + String.format("mean_request_millis %.3f%n", served == 0 ? 0.0 : requestNanos.sum() / 1e6 / served)
+                    + "solved " + metrics.getSolved() + "\n"
+                    + "no_solution " + metrics.getNoSolution() + "\n"
+                    + "invalid " + metrics.getInvalid() + "\n"
+                    + "timed_out " + metrics.getTimedOut() + "\n"
+                    + "cancelled " + metrics.getCancelled() + "\n"
+                    + "nodes " + metrics.getNodes() + "\n"
+                    + "solve_p50_micros " + metrics.getP50LatencyMicros() + "\n"
+                    + "solve_p99_micros " + metrics.getP99LatencyMicros() + "\n"
+                    + "solve_max_micros " + metrics.getMaxLatencyMicros() + "\n";
+            send(exchange, 200, text);
+        }
+    }
+
+    private static void send(HttpExchange exchange, int status, String text) throws IOException {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", TEXT);
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()){
+            out.write(bytes);
+        }
+    }
+
+    /**
+     * Runs the service from the command line until the process is stopped.
+     * @param args the options described in the class comment
+     */
+    public static void main(String[] args) {
+        int port = 8080;
+        int threads = Runtime.getRuntime().availableProcessors();
+        int capacity = 4096;
+        SudokuEngine engine = new SudokuSolver();
+        Duration timeout = null;
+        for (int i = 0; i < args.length; i++){
+            switch (args[i]){
+                case "--port" -> port = Integer.parseInt(args[++i]);
+                case "--threads" -> threads = Integer.parseInt(args[++i]);
+                case "--queue" -> capacity = Integer.parseInt(args[++i]);
+                case "--engine" -> {
+                    try{
+                        engine = SudokuBatch.engine(args[++i]);
+                    }
+                    catch (IllegalArgumentException e){
+                        System.err.println(e.getMessage());
+                        System.err.println(USAGE);
+                        return;
+                    }
+                }
+                case "--timeout" -> timeout = Duration.ofMillis(Long.parseLong(args[++i]));
+                default -> {
+                    System.err.println(USAGE);
+                    return;
+                }
+            }
+        }
+
+        SudokuServer service = new SudokuServer(engine, threads, capacity, timeout);
+        try{
+            int bound = service.start(port);
+            System.err.println("Solving puzzles at http://localhost:" + bound + "/solve");
+        }
+        catch (IOException e){
+            System.err.println("Could not start the server: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package solver;
+
+import config.SudokuConfig;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Sends each puzzle to the one engine expected to solve it fastest, learning which that is from the puzzles it has
+ * already solved. Where a {@link PortfolioSolver} spends a core on every strategy to bound the worst case, this spends
+ * one core per puzzle, which suits batch jobs that are limited by throughput.
+ * <p>
+ * Each puzzle is first measured by {@link PuzzleFeatures} and sorted into a bucket. For every bucket the solver keeps
+ * an exponentially weighted moving average of how long each strategy has taken, and picks the strategy with the
+ * lowest. A strategy that has never run in a bucket is tried first, and a small fraction of puzzles go to a random
+ * strategy instead, so an estimate that has gone stale still gets corrected. The softening done to measure the
+ * puzzle is not thrown away: the chosen engine solves the softened board, and a puzzle that softening solves
+ * outright, or shows to have no solution, is answered without any engine at all. The softening counts as part of
+ * every solve, both in the time a strategy is judged by and in the statistics reported.
+ * <p>
+ * Solves that were cancelled are not learned from, since their time says nothing about the strategy, but solves that
+ * ran out of budget are, since a strategy that times out on a bucket should not be picked for it again.
+ * The solver is safe to share between threads as long as its strategies are.
+ *
+ * @author Dylan Sturr
+ */
+public class AdaptiveSolver implements SudokuEngine {
+    /** How much the latest solve counts towards a strategy's average */
+    private final static double ALPHA = 0.2;
+    /** The share of puzzles sent to a random strategy by default */
+    private final static double EPSILON = 0.05;
+
+    private final String[] names;
+    private final SudokuEngine[] engines;
+    private final double epsilon;
+    private final Bucket[] buckets = new Bucket[PuzzleFeatures.BUCKETS];
+    private final LongAdder[] choices;
+    private final SolverMetrics metrics = SolverMetrics.forName(getClass().getSimpleName());
+
+    /**
+     * What one bucket has learned about each strategy.
+     */
+    private static class Bucket {
+        private final double[] nanos;
+        private final long[] solves;
+
+        private Bucket(int strategies){
+            nanos = new double[strategies];
+            solves = new long[strategies];
+        }
+
+        /**
+         * Picks a strategy: one that has never run here, a random one now and then, or the fastest so far.
+         */
+        private synchronized int choose(double epsilon){
+            int best = 0;
+            for (int i = 0; i < solves.length; i++){
+                if (solves[i] == 0){
+                    return i;
+                }
+                if (nanos[i] < nanos[best]){
+                    best = i;
+                }
+            }
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            return random.nextDouble() < epsilon ? random.nextInt(solves.length) : best;
+        }
+
+        private synchronized void learn(int strategy, long elapsed){
+            nanos[strategy] = solves[strategy] == 0 ? elapsed : nanos[strategy] + ALPHA * (elapsed - nanos[strategy]);
+            solves[strategy]++;
+        }
+    }
+
+    /**
+     * Creates a solver that chooses between the same engines as a default {@link PortfolioSolver}.
+     */
+    public AdaptiveSolver(){
+        this(PortfolioSolver.defaultStrategies(), EPSILON);
+    }
+
+    /**
+     * Creates a solver that chooses between any engines
+     * @param strategies the engines to choose from, by the name their choices are reported under
+     * @param epsilon the share of puzzles, from 0 to 1, sent to a random strategy to keep the estimates fresh
+     * @throws IllegalArgumentException if there are no strategies or the share is out of range
+     */
+    public AdaptiveSolver(Map<String, ? extends SudokuEngine> strategies, double epsilon){
+        if (strategies.isEmpty()){
+            throw new IllegalArgumentException("An adaptive solver needs at least one strategy");
+        }
+        if (epsilon < 0 || epsilon > 1){
+            throw new IllegalArgumentException("The share of random choices must be from 0 to 1, not " + epsilon);
+        }
+        names = strategies.keySet().toArray(new String[0]);
+        engines = strategies.values().toArray(new SudokuEngine[0]);
+        this.epsilon = epsilon;
+        for (int i = 0; i < buckets.length; i++){
+            buckets[i] = new Bucket(engines.length);
+        }
+        choices = new LongAdder[names.length];
+        for (int i = 0; i < choices.length; i++){
+            choices[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Measures the puzzle, solves it with the strategy expected to be fastest for its bucket, and learns from the time
+     * the solve took.
+     * @param sc the Sudoku puzzle to solve, which is not changed
+     * @param budget the limits of the solve
+     * @return the chosen engine's result with the softening added to its statistics, or the softening's own result
+     * if it solved the puzzle or showed it has no solution
+     */
+    @Override
+    public SolveResult solve(SudokuConfig sc, Budget budget){
+        long start = System.nanoTime();
+        PuzzleFeatures features = PuzzleFeatures.analyze(sc.getBoard());
+        long softenNanos = System.nanoTime() - start;
+        long singles = Math.max(0, features.getGeometry().cells() - features.getClues() - features.getEmptyAfterSoften());
+        if (!features.isConsistent() || features.getEmptyAfterSoften() == 0){
+            SolveStats stats = new SolveStats(0, 0, 0, singles, 0, softenNanos, 0);
+            // Like the engines, a budget that is already spent or cancelled gets no answer
+            SolveResult.Status stopped = budget.check(0);
+            if (stopped != null){
+                return metrics.record(new SolveResult(stopped, null, stats));
+            }
+            if (!features.isConsistent()){
+                return metrics.record(new SolveResult(sc.getBoard().hasConflicts() ? SolveResult.Status.INVALID
+                        : SolveResult.Status.NO_SOLUTION, null, stats));
+            }
+            return metrics.record(new SolveResult(SolveResult.Status.SOLVED, new SudokuConfig(features.softened()), stats));
+        }
+        Bucket bucket = buckets[features.bucket()];
+        int strategy = bucket.choose(epsilon);
+        choices[strategy].increment();
+
+        SolveResult result = engines[strategy].solve(new SudokuConfig(features.softened()), budget);
+        if (result.getStatus() != SolveResult.Status.CANCELLED){
+            bucket.learn(strategy, System.nanoTime() - start);
+        }
+        SolveStats engine = result.getStats();
+        SolveStats stats = new SolveStats(engine.getNodes(), engine.getBacktracks(), engine.getMaxDepth(),
+                singles + engine.getSingles(), engine.getValidationNanos(), softenNanos + engine.getPropagationNanos(),
+                engine.getSearchNanos());
+        return metrics.record(new SolveResult(result.getStatus(), result.getSolution().orElse(null), stats));
+    }
+
+    /**
+     * Gets how many puzzles each strategy has been chosen for
+     * @return the choice counts by strategy name, in the order the strategies were given
+     */
+    public Map<String, Long> getChoices(){
+        Map<String, Long> counts = new LinkedHashMap<>();
+        for (int i = 0; i < names.length; i++){
+            counts.put(names[i], choices[i].sum());
+        }
+        return counts;
+    }
+
+    /**
+     * Gets the metrics this solver's solves are added to
+     * @return the metrics
+     */
+    public SolverMetrics getMetrics(){
+        return metrics;
+    }
+
+    @Override
+    public String toString(){
+        return "AdaptiveSolver[choices=" + getChoices() + "]";
+    }
+}
@@ -0,0 +1,101 @@
+package solver;
+
+import java.time.Duration;
+
+/**
+ * Limits on how much work a solve may do, and a way to call it off from another thread.
+ * <p>
+ * A budget has an optional deadline and an optional cap on search nodes, and can be cancelled at any time.
+ * Solvers check it every few hundred nodes, so a solve stops soon after its budget runs out or it is cancelled,
+ * and reports {@link SolveResult.Status#TIMED_OUT} or {@link SolveResult.Status#CANCELLED} rather than claiming
+ * that the puzzle has no solution. The clock starts when the budget is created.
+ * <p>
+ * A budget is safe to share between threads. Sharing one between several solves cancels them all at once.
+ * A {@link #child()} budget has the same limits and is also cancelled along with its parent, so a solve made of
+ * several racing solves can call off some of them without calling off the rest.
+ *
+ * @author Dylan Sturr
+ */
+public class Budget {
+    private final long deadline;
+    private final long maxNodes;
+    private final Budget parent;
+    private volatile boolean cancelled;
+
+    /**
+     * Creates a budget
+     * @param timeout how long solving may take, or null for no time limit
+     * @param maxNodes the most search nodes a solve may expand, or 0 for no limit
+     */
+    public Budget(Duration timeout, long maxNodes){
+        this(timeout == null ? Long.MAX_VALUE : System.nanoTime() + timeout.toNanos(), maxNodes > 0 ? maxNodes : Long.MAX_VALUE, null);
+    }
+
+    private Budget(long deadline, long maxNodes, Budget parent){
+        this.deadline = deadline;
+        this.maxNodes = maxNodes;
+        this.parent = parent;
+    }
+
+    /**
+     * Creates a budget with no limits, which only stops when it is cancelled
+     * @return the budget
+     */
+    public static Budget unlimited(){
+        return new Budget(null, 0);
+    }
+
+    /**
+     * Creates a budget with only a time limit
+     * @param timeout how long solving may take
+     * @return the budget
+     */
+    public static Budget ofTimeout(Duration timeout){
+        return new Budget(timeout, 0);
+    }
+
+    /**
+     * Creates a budget with the same deadline and node limit that is cancelled whenever this one is,
+     * but can also be cancelled on its own
+     * @return the child budget
+     */
+    Budget child(){
+        return new Budget(deadline, maxNodes, this);
+    }
+
+    /**
+     * Asks every solve using this budget to stop at its next check.
+     */
+    public void cancel(){
+        cancelled = true;
+    }
+
+    /**
+     * Has the budget been cancelled?
+     * @return whether {@link #cancel()} has been called on this budget or the one it is a child of
+     */
+    public boolean isCancelled(){
+        return cancelled || (parent != null && parent.isCancelled());
+    }
+
+    /**
+     * Has the time or node limit been reached?
+     * @param nodes the nodes expanded so far
+     * @return whether the deadline has passed or there have been more nodes than the limit allows
+     */
+    public boolean isExhausted(long nodes){
+        return nodes > maxNodes || (deadline != Long.MAX_VALUE && System.nanoTime() - deadline > 0);
+    }
+
+    /**
+     * Checks the budget
+     * @param nodes the nodes expanded so far
+     * @return CANCELLED or TIMED_OUT if the solve should stop, or null if it may carry on
+     */
+    SolveResult.Status check(long nodes){
+        if (isCancelled()){
+            return SolveResult.Status.CANCELLED;
+        }
+        return isExhausted(nodes) ? SolveResult.Status.TIMED_OUT : null;
+    }
+}
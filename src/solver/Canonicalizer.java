@@ -0,0 +1,382 @@
+package solver;
+
+import config.Geometry;
+import config.SudokuBoard;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Reduces a 9x9 puzzle to a canonical form under the symmetries of sudoku, so that puzzles which are
+ * relabelings, transpositions, rotations, or row and column permutations of each other all share one form.
+ * <p>
+ * The symmetries are transposition, any order of the three bands and of the rows within each band, any order of
+ * the three stacks and of the columns within each stack, and any relabeling of the digits. Rotations are
+ * combinations of these. The canonical form is the smallest grid reachable this way, read row by row with
+ * empty cells as 0 and digits relabeled 1, 2, 3... in order of first appearance.
+ * <p>
+ * The digits of a row are all different, so the first row always reads 1, 2, 3... in its filled cells, and only
+ * where its empty cells go matters. The smallest first row is therefore a row with the fewest clues, with its
+ * emptiest stacks first and the empty cells of each stack first, and only the column orders that achieve this are
+ * carried forward. Each later row is then picked from the rows still allowed by the band structure, keeping only
+ * the choices that give the smallest row. Since each row is packed into a long with one nibble per cell, rows
+ * compare with a single integer comparison.
+ * <p>
+ * A puzzle with very few clues has so many symmetries that almost every row order ties with another, and the ties
+ * would grow past any memory before the rows run out. Once more than {@link #MAX_TIES} transformations tie, the
+ * puzzle is refused instead.
+ *
+ * @author Dylan Sturr
+ */
+public class Canonicalizer {
+    private final static Geometry CLASSIC = Geometry.CLASSIC;
+    private final static int DIM = CLASSIC.dim();
+    private final static int BOX = CLASSIC.box();
+    private final static int CELLS = CLASSIC.cells();
+    /** The most transformations that may tie for the smallest grid at once before a puzzle is refused */
+    public final static int MAX_TIES = 1 << 12;
+
+    /** Every order of the cells of a stack, or of the stacks themselves */
+    private final static int[][] TRIPLES = {{0, 1, 2}, {0, 2, 1}, {1, 0, 2}, {1, 2, 0}, {2, 0, 1}, {2, 1, 0}};
+    /** Every order of the columns that keeps the stacks intact, indexed by the stack order and then each stack's order */
+    private final static int[][] COLUMN_ORDERS = new int[TRIPLES.length * TRIPLES.length * TRIPLES.length * TRIPLES.length][];
+
+    static {
+        int index = 0;
+        for (int[] stacks : TRIPLES){
+            for (int[] a : TRIPLES){
+                for (int[] b : TRIPLES){
+                    for (int[] c : TRIPLES){
+                        int[][] inner = {a, b, c};
+                        int[] order = new int[DIM];
+                        for (int s = 0; s < BOX; s++){
+                            for (int i = 0; i < BOX; i++){
+                                order[s * BOX + i] = stacks[s] * BOX + inner[s][i];
+                            }
+                        }
+                        COLUMN_ORDERS[index++] = order;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * A canonical form, along with the transformation that produced it.
+     * @param digits the canonical puzzle in row-major order, with 0 for empty cells
+     * @param cells maps each canonical cell to the original cell it came from
+     * @param labels maps each original digit to its canonical label, with index 0 unused
+     */
+    public record Form(byte[] digits, int[] cells, int[] labels){
+        /**
+         * Moves a grid in canonical orientation, such as a solution of the canonical puzzle,
+         * back into the original orientation and digits.
+         * @param canonical the grid in canonical form
+         * @return the same grid in the original form
+         */
+        public byte[] toOriginal(byte[] canonical){
+            int[] digitOf = new int[DIM + 1];
+            for (int d = 1; d <= DIM; d++){
+                digitOf[labels[d]] = d;
+            }
+            byte[] original = new byte[CELLS];
+            for (int i = 0; i < CELLS; i++){
+                original[cells[i]] = (byte) (canonical[i] == 0 ? 0 : digitOf[canonical[i]]);
+            }
+            return original;
+        }
+
+        /**
+         * Moves a grid in the original orientation into the canonical one.
+         * @param original the grid in original form
+         * @return the same grid in canonical form
+         */
+        public byte[] toCanonical(byte[] original){
+            byte[] canonical = new byte[CELLS];
+            for (int i = 0; i < CELLS; i++){
+                int d = original[cells[i]];
+                canonical[i] = (byte) (d == 0 ? 0 : labels[d]);
+            }
+            return canonical;
+        }
+    }
+
+    /**
+     * A partial transformation whose rows so far all tie for the smallest.
+     */
+    private static class State {
+        private byte[] grid;
+        private boolean transposed;
+        private int[] columns;
+        private final int[] rows = new int[DIM];
+        private final int[] labels;
+        private int nextLabel;
+
+        private State(){
+            this.labels = new int[DIM + 1];
+        }
+
+        private State(byte[] grid, boolean transposed, int[] columns, int[] labels, int nextLabel){
+            this.grid = grid;
+            this.transposed = transposed;
+            this.columns = columns;
+            this.labels = labels;
+            this.nextLabel = nextLabel;
+        }
+
+        /**
+         * Starts this state over from a single row, so the many column orders tied for the first row
+         * can each be tried without creating a state for every one.
+         */
+        private void start(byte[] grid, boolean transposed, int[] columns, int row){
+            this.grid = grid;
+            this.transposed = transposed;
+            this.columns = columns;
+            Arrays.fill(labels, 0);
+            nextLabel = 0;
+            rows[0] = row;
+            encode(row);
+        }
+
+        /**
+         * Creates the state reached by appending a row, with its own copy of the labels.
+         */
+        private State extend(int position, int row){
+            State next = new State(grid, transposed, columns, labels.clone(), nextLabel);
+            System.arraycopy(rows, 0, next.rows, 0, position);
+            next.rows[position] = row;
+            next.encode(row);
+            return next;
+        }
+
+        /**
+         * Labels any digits a row shows for the first time, in the order they appear under this state's column order.
+         */
+        private void encode(int row){
+            for (int j = 0; j < DIM; j++){
+                int d = grid[row * DIM + columns[j]];
+                if (d != 0 && labels[d] == 0){
+                    labels[d] = ++nextLabel;
+                }
+            }
+        }
+
+        /**
+         * Packs a row as it reads under this state's column order, one nibble per cell with the first cell in the
+         * highest nibble. The labels are not changed, and it gives up as soon as the row reads larger than a limit.
+         * The digits of a row are all different, so every digit not labeled yet gets the next label.
+         * @return the row, or {@link Long#MAX_VALUE} if it is larger than the limit
+         */
+        private long peek(int row, long limit){
+            long code = 0;
+            int next = nextLabel;
+            for (int j = 0; j < DIM; j++){
+                int d = grid[row * DIM + columns[j]];
+                code = code << 4 | (d == 0 ? 0 : labels[d] != 0 ? labels[d] : ++next);
+                if (code > limit >>> 4 * (DIM - 1 - j)){
+                    return Long.MAX_VALUE;
+                }
+            }
+            return code;
+        }
+    }
+
+    /**
+     * Finds the canonical form of a puzzle
+     * @param board the puzzle
+     * @return the canonical form and the transformation to it
+     * @throws IllegalArgumentException if the board is not 9x9, a digit appears twice in a row, column, or box,
+     * or more than {@link #MAX_TIES} transformations tie for the smallest grid
+     */
+    public Form canonicalize(SudokuBoard board){
+        if (board.geometry() != CLASSIC){
+            throw new IllegalArgumentException("Only a 9x9 puzzle has a canonical form, not a " + board.geometry() + " one");
+        }
+        if (board.hasConflicts()){
+            throw new IllegalArgumentException("Only a puzzle without conflicts has a canonical form");
+        }
+        byte[] grid = new byte[CELLS];
+        byte[] transposed = new byte[CELLS];
+        for (int cell = 0; cell < CELLS; cell++){
+            grid[cell] = (byte) board.get(cell);
+            transposed[CLASSIC.col(cell) * DIM + CLASSIC.row(cell)] = grid[cell];
+        }
+
+        byte[][] grids = {grid, transposed};
+        int[][] filled = new int[grids.length][DIM];
+        int best = Integer.MAX_VALUE;
+        for (int t = 0; t < grids.length; t++){
+            for (int row = 0; row < DIM; row++){
+                for (int col = 0; col < DIM; col++){
+                    if (grids[t][row * DIM + col] != 0){
+                        filled[t][row] |= 1 << col;
+                    }
+                }
+                best = Math.min(best, smallestPattern(filled[t][row]));
+            }
+        }
+
+        Ties ties = new Ties(1);
+        State first = new State();
+        for (int t = 0; t < grids.length; t++){
+            for (int row = 0; row < DIM; row++){
+                if (smallestPattern(filled[t][row]) == best){
+                    for (int[] columns : columnOrders(filled[t][row], best)){
+                        first.start(grids[t], t == 1, columns, row);
+                        ties.offer(first);
+                    }
+                }
+            }
+        }
+
+        List<State> states = ties.states;
+        for (int position = 2; position < DIM; position++){
+            ties = new Ties(position);
+            for (State state : states){
+                ties.offer(state);
+            }
+            states = ties.states;
+        }
+        return form(states.getFirst());
+    }
+
+    /**
+     * Finds where the clues of a row end up when it is read in its smallest order: stacks with fewer clues first,
+     * and the empty cells of each stack before its clues.
+     * @param filled the columns of the row that hold clues
+     * @return the positions that hold clues, with the first position in the highest of 9 bits
+     */
+    private static int smallestPattern(int filled){
+        int[] counts = new int[BOX];
+        for (int s = 0; s < BOX; s++){
+            counts[s] = Integer.bitCount(filled >> s * BOX & 0b111);
+        }
+        Arrays.sort(counts);
+        int pattern = 0;
+        for (int s = 0; s < BOX; s++){
+            pattern = pattern << BOX | (1 << counts[s]) - 1;
+        }
+        return pattern;
+    }
+
+    /**
+     * Finds every column order that moves a row's clues to the positions of a pattern.
+     * The stack order is checked first, and then the order within each stack, so only matching orders are visited.
+     * @param filled the columns of the row that hold clues
+     * @param pattern the positions the clues must end up in, as from {@link #smallestPattern(int)}
+     * @return the matching column orders
+     */
+    private static List<int[]> columnOrders(int filled, int pattern){
+        List<int[]> orders = new ArrayList<>();
+        int n = TRIPLES.length;
+        for (int stackOrder = 0; stackOrder < n; stackOrder++){
+            int[] stacks = TRIPLES[stackOrder];
+            int[][] inner = new int[BOX][n];
+            int[] matches = new int[BOX];
+            for (int s = 0; s < BOX; s++){
+                int target = pattern >> (BOX - 1 - s) * BOX & 0b111;
+                for (int i = 0; i < n; i++){
+                    int moved = 0;
+                    for (int j = 0; j < BOX; j++){
+                        moved = moved << 1 | filled >> stacks[s] * BOX + TRIPLES[i][j] & 1;
+                    }
+                    if (moved == target){
+                        inner[s][matches[s]++] = i;
+                    }
+                }
+            }
+            for (int a = 0; a < matches[0]; a++){
+                for (int b = 0; b < matches[1]; b++){
+                    for (int c = 0; c < matches[2]; c++){
+                        orders.add(COLUMN_ORDERS[((stackOrder * n + inner[0][a]) * n + inner[1][b]) * n + inner[2][c]]);
+                    }
+                }
+            }
+        }
+        return orders;
+    }
+
+    /**
+     * The states tied for the smallest grid so far, one row further down than the states they came from.
+     */
+    private static class Ties {
+        private final int position;
+        private final List<State> states = new ArrayList<>();
+        private long smallest = Long.MAX_VALUE;
+
+        private Ties(int position){
+            this.position = position;
+        }
+
+        /**
+         * Tries every row that may come next after a state, keeping the ones that tie for the smallest.
+         */
+        private void offer(State state){
+            for (int row = 0; row < DIM; row++){
+                if (!allowed(state.rows, position, row)){
+                    continue;
+                }
+                long code = state.peek(row, smallest);
+                if (code < smallest){
+                    smallest = code;
+                    states.clear();
+                }
+                if (code == smallest){
+                    if (states.size() == MAX_TIES){
+                        throw new IllegalArgumentException("The puzzle has too many symmetries to canonicalize");
+                    }
+                    states.add(state.extend(position, row));
+                }
+            }
+        }
+    }
+
+    /**
+     * Checks whether a row may go at a position, given the rows already placed above it.
+     * The first row of each band can come from any band not used yet, and the other two from the same band.
+     */
+    private static boolean allowed(int[] rows, int position, int row){
+        for (int i = 0; i < position; i++){
+            if (rows[i] == row){
+                return false;
+            }
+        }
+        int band = row / BOX;
+        if (position % BOX != 0){
+            return rows[position - position % BOX] / BOX == band;
+        }
+        for (int i = 0; i < position; i += BOX){
+            if (rows[i] / BOX == band){
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Builds the form of a complete state, labeling any digits the puzzle never uses in increasing order.
+     */
+    private static Form form(State state){
+        int[] labels = state.labels.clone();
+        int next = state.nextLabel;
+        for (int d = 1; d <= DIM; d++){
+            if (labels[d] == 0){
+                labels[d] = ++next;
+            }
+        }
+        byte[] digits = new byte[CELLS];
+        int[] cells = new int[CELLS];
+        for (int i = 0; i < DIM; i++){
+            for (int j = 0; j < DIM; j++){
+                int row = state.rows[i];
+                int col = state.columns[j];
+                int original = state.transposed ? col * DIM + row : row * DIM + col;
+                int d = state.grid[row * DIM + col];
+                cells[i * DIM + j] = original;
+                digits[i * DIM + j] = (byte) (d == 0 ? 0 : labels[d]);
+            }
+        }
+        return new Form(digits, cells, labels);
+    }
+}
@@ -0,0 +1,17 @@
+package solver;
+
+import config.SudokuBoard;
+
+/**
+ * Chooses which empty cell the backtracker branches on next.
+ *
+ * @author Dylan Sturr
+ */
+public interface CellSelector {
+    /**
+     * Picks the next cell to fill
+     * @param board the board being searched
+     * @return the index of an empty cell, or -1 if the board is full
+     */
+    int select(SudokuBoard board);
+}
@@ -0,0 +1,83 @@
+package solver;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A lock-free histogram of durations with buckets whose width grows with their value, so any duration from
+ * nanoseconds to hours is recorded in constant space with at most 1/8 relative error.
+ * <p>
+ * Values below 8 get a bucket each. Above that, every power of two is divided into 8 equal buckets, which are
+ * indexed by the position of the value's highest bit and the 3 bits below it.
+ *
+ * @author Dylan Sturr
+ */
+class LatencyHistogram {
+    private final static int SUB_BITS = 3;
+    private final static int SUB_BUCKETS = 1 << SUB_BITS;
+
+    private final AtomicLongArray counts = new AtomicLongArray((64 - SUB_BITS + 1) * SUB_BUCKETS);
+
+    /**
+     * Finds the bucket of a value
+     */
+    private static int bucket(long value){
+        if (value < SUB_BUCKETS){
+            return (int) Math.max(0, value);
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int sub = (int) (value >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    /**
+     * Finds the largest value that falls in a bucket
+     */
+    private static long highest(int bucket){
+        if (bucket < SUB_BUCKETS){
+            return bucket;
+        }
+        int shift = bucket / SUB_BUCKETS - 1;
+        long lowest = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+        return lowest + (1L << shift) - 1;
+    }
+
+    /**
+     * Adds a duration
+     * @param nanos the duration
+     */
+    void record(long nanos){
+        counts.incrementAndGet(bucket(nanos));
+    }
+
+    /**
+     * Estimates a percentile of the durations recorded so far. Recording may carry on while this runs.
+     * @param percentile the percentile, from 0 to 100
+     * @return the upper edge of the bucket the percentile falls in, or 0 if nothing has been recorded
+     */
+    long percentile(double percentile){
+        long[] snapshot = new long[counts.length()];
+        long total = 0;
+        for (int i = 0; i < snapshot.length; i++){
+            snapshot[i] = counts.get(i);
+            total += snapshot[i];
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * total));
+        long seen = 0;
+        for (int i = 0; i < snapshot.length; i++){
+            seen += snapshot[i];
+            if (seen >= rank){
+                return highest(i);
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Forgets every duration.
+     */
+    void reset(){
+        for (int i = 0; i < counts.length(); i++){
+            counts.set(i, 0);
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package solver;
+
+import config.SudokuBoard;
+
+/**
+ * Branches on the empty cell with the fewest remaining candidates. Ties are broken by degree, preferring the
+ * cell with the most empty peers, since filling it constrains the most of the remaining board.
+ *
+ * @author Dylan Sturr
+ */
+public class MinimumRemainingValuesSelector implements CellSelector {
+    /**
+     * Picks the most constrained empty cell
+     * @param board the board being searched
+     * @return the index of the chosen cell, or -1 if the board is full
+     */
+    @Override
+    public int select(SudokuBoard board){
+        int best = -1;
+        int bestCount = Integer.MAX_VALUE;
+        int bestDegree = -1;
+        int cells = board.geometry().cells();
+        for (int cell = 0; cell < cells; cell++){
+            if (board.get(cell) != 0){
+                continue;
+            }
+            int count = Integer.bitCount(board.candidates(cell));
+            if (count <= 1){
+                // a dead end or a forced cell, nothing can beat it
+                return cell;
+            }
+            if (count < bestCount){
+                best = cell;
+                bestCount = count;
+                bestDegree = -1;
+            }
+            else if (count == bestCount){
+                if (bestDegree < 0){
+                    bestDegree = degree(board, best);
+                }
+                int degree = degree(board, cell);
+                if (degree > bestDegree){
+                    best = cell;
+                    bestDegree = degree;
+                }
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Counts the empty peers of a cell
+     * @param board the board being searched
+     * @param cell the cell index
+     * @return the number of empty cells sharing a row, column, or box with the cell
+     */
+    private static int degree(SudokuBoard board, int cell){
+        int degree = 0;
+        for (int peer : board.geometry().peers(cell)){
+            if (board.get(peer) == 0){
+                degree++;
+            }
+        }
+        return degree;
+    }
+}
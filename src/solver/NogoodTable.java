@@ -0,0 +1,161 @@
+package solver;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Remembers partial boards that are known to have no solution, so a search that reaches one again can give it up
+ * at once instead of exploring the same dead subtree a second time.
+ * <p>
+ * A board is recorded by its {@link config.SudokuBoard#hash() Zobrist hash} once a search has explored everything
+ * beneath it without finding a solution. Whether a set of placed digits can be completed does not depend on the
+ * puzzle it came from or the path that led to it, so one table can be shared by every solve of the same size,
+ * such as the many uniqueness checks made while generating a puzzle, or several searches racing on one puzzle.
+ * <p>
+ * The table is a fixed array of hashes with {@link #PROBES} slots per key and no locks. Lookups are plain reads,
+ * and insertions claim an empty slot by compare-and-set, overwriting one of the key's slots when all of them are
+ * taken, so the table never grows and old entries make way for new ones. Only the hash is kept, so two boards with
+ * the same 64-bit hash are taken to be the same board; with tables of millions of entries the chance of that
+ * pruning a solution away is still around one in a trillion per lookup.
+ *
+ * @author Dylan Sturr
+ */
+public class NogoodTable {
+    /** How many neighboring slots a key may be stored in */
+    private final static int PROBES = 4;
+
+    private final AtomicLongArray slots;
+    private final int mask;
+    private final LongAdder lookups = new LongAdder();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder insertions = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * Creates an empty table
+     * @param capacity the most boards to remember, which is rounded up to a power of two
+     * @throws IllegalArgumentException if the capacity is not positive or is too large for an array
+     */
+    public NogoodTable(int capacity){
+        if (capacity <= 0 || capacity > 1 << 30){
+            throw new IllegalArgumentException("The capacity must be from 1 to 2^30, not " + capacity);
+        }
+        int size = Math.max(PROBES, Integer.highestOneBit(capacity - 1) << 1);
+        slots = new AtomicLongArray(size);
+        mask = size - 1;
+    }
+
+    /**
+     * Is a board known to have no solution?
+     * @param hash the board's hash
+     * @return whether the board was recorded and has not been overwritten since
+     */
+    public boolean contains(long hash){
+        long key = key(hash);
+        int index = index(key);
+        lookups.increment();
+        for (int i = 0; i < PROBES; i++){
+            long slot = slots.get((index + i) & mask);
+            if (slot == key){
+                hits.increment();
+                return true;
+            }
+            if (slot == 0){
+                return false;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Records a board that has no solution.
+     * @param hash the board's hash
+     */
+    public void add(long hash){
+        long key = key(hash);
+        int index = index(key);
+        for (int i = 0; i < PROBES; i++){
+            int at = (index + i) & mask;
+            long slot = slots.get(at);
+            if (slot == key){
+                return;
+            }
+            if (slot == 0 && slots.compareAndSet(at, 0, key)){
+                insertions.increment();
+                return;
+            }
+        }
+        slots.set((index + (int) (key >>> 62)) & mask, key);
+        insertions.increment();
+        evictions.increment();
+    }
+
+    /**
+     * Maps a hash to the value stored for it, which is never 0, since 0 marks an empty slot.
+     */
+    private static long key(long hash){
+        return hash == 0 ? 1 : hash;
+    }
+
+    /**
+     * Picks the first slot of a key. The hashes are already random, so their low bits serve as they are.
+     */
+    private int index(long key){
+        return (int) key & mask;
+    }
+
+    /**
+     * Gets the number of slots, which is the most boards the table can hold
+     * @return the capacity
+     */
+    public int capacity(){
+        return slots.length();
+    }
+
+    /**
+     * Gets the number of lookups made
+     * @return the lookup count
+     */
+    public long getLookups(){
+        return lookups.sum();
+    }
+
+    /**
+     * Gets the number of lookups that found their board
+     * @return the hit count
+     */
+    public long getHits(){
+        return hits.sum();
+    }
+
+    /**
+     * Gets the number of boards recorded
+     * @return the insertion count
+     */
+    public long getInsertions(){
+        return insertions.sum();
+    }
+
+    /**
+     * Gets the number of boards overwritten to make room for others
+     * @return the eviction count
+     */
+    public long getEvictions(){
+        return evictions.sum();
+    }
+
+    /**
+     * Forgets every board, keeping the counters. Boards recorded while the table is being cleared may survive.
+     */
+    public void clear(){
+        for (int i = 0; i < slots.length(); i++){
+            slots.set(i, 0);
+        }
+    }
+
+    @Override
+    public String toString(){
+        return "NogoodTable[capacity=" + capacity() + ", lookups=" + lookups + ", hits=" + hits
+                + ", insertions=" + insertions + ", evictions=" + evictions + "]";
+    }
+}
@@ -0,0 +1,80 @@
+package solver;
+
+import config.SudokuBoard;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * A fork/join task that splits the top levels of the search tree into independent subproblems.
+ * <p>
+ * Above the split depth, every candidate of the chosen cell becomes its own task on its own copy of the board,
+ * so idle workers can steal whole subtrees. Below it, a task runs an ordinary in-place {@link Search}.
+ * Solutions are reported to the shared {@link SearchControl}, and once it has enough of them every other
+ * task gives up at its next node.
+ *
+ * @author Dylan Sturr
+ */
+@SuppressWarnings("serial") // fork/join tasks are never serialized, so the board and control need not be
+class ParallelSearch extends RecursiveAction {
+    private final SudokuBoard board;
+    private final int depth;
+    private final int splitDepth;
+    private final SearchControl control;
+
+    /**
+     * Creates a task for a subproblem
+     * @param board this task's own copy of the board
+     * @param depth the number of branches taken to reach this subproblem
+     * @param splitDepth how many levels of the tree are split into separate tasks
+     * @param control the settings and results of the whole solve
+     */
+    ParallelSearch(SudokuBoard board, int depth, int splitDepth, SearchControl control){
+        this.board = board;
+        this.depth = depth;
+        this.splitDepth = splitDepth;
+        this.control = control;
+    }
+
+    /**
+     * Picks a split depth that gives each worker of a pool several subtrees to steal from.
+     * @param parallelism the number of workers
+     * @return the split depth
+     */
+    static int splitDepth(int parallelism){
+        return 32 - Integer.numberOfLeadingZeros(parallelism) + 3;
+    }
+
+    /**
+     * Either splits this subproblem by the candidates of its next cell, or searches it sequentially.
+     */
+    @Override
+    protected void compute(){
+        if (control.checkpoint(0)){
+            return;
+        }
+        if (depth >= splitDepth){
+            new Search(board, control, depth).run();
+            return;
+        }
+
+        control.record(1, 0, depth);
+        if (!new Propagator(control.level()).propagate(board)){
+            return;
+        }
+        int cell = control.selector().select(board);
+        if (cell < 0){
+            control.found(board);
+            return;
+        }
+        List<ParallelSearch> subtasks = new ArrayList<>();
+        for (int mask = board.candidates(cell); mask != 0; mask &= mask - 1){
+            SudokuBoard successor = new SudokuBoard(board);
+            if (successor.place(cell, SudokuBoard.digit(mask))){
+                subtasks.add(new ParallelSearch(successor, depth + 1, splitDepth, control));
+            }
+        }
+        invokeAll(subtasks);
+    }
+}
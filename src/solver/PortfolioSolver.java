@@ -0,0 +1,204 @@
+package solver;
+
+import config.SudokuConfig;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Races several engines on the same puzzle and keeps whichever answers first, so that no single puzzle has to wait
+ * on an engine that happens to suit it badly.
+ * <p>
+ * Every strategy solves the puzzle at once on a thread of its own, with a child of the caller's {@link Budget}.
+ * The first to find a solution or prove there is none wins, and every other strategy is cancelled. A strategy that
+ * runs out of budget does not end the race; the solve only times out once every strategy has.
+ * <p>
+ * The strategies run on platform threads, which the operating system time-slices, rather than on virtual threads.
+ * A search never blocks, so a virtual thread running one would keep its carrier until it finished, and with fewer
+ * carriers than strategies the race would quietly become a queue. Idle threads are kept for reuse and are daemons,
+ * so a solver that is never closed does not keep the program alive.
+ * <p>
+ * The solver counts how many races each strategy has won, and its solves are added to the {@link SolverMetrics}
+ * named after it. The default strategies keep metrics of their own that are not published, so the strategies a race
+ * cancels do not show up as cancelled solves of the shared backtracking metrics. It is safe to share between threads
+ * as long as its strategies are.
+ *
+ * @author Dylan Sturr
+ */
+public class PortfolioSolver implements SudokuEngine, AutoCloseable {
+    private final String[] names;
+    private final SudokuEngine[] engines;
+    private final LongAdder[] wins;
+    private final LongAdder races = new LongAdder();
+    private final ExecutorService threads = Executors.newCachedThreadPool(Thread.ofPlatform().name("portfolio-", 0).daemon().factory());
+    private final SolverMetrics metrics = SolverMetrics.forName(getClass().getSimpleName());
+
+    /**
+     * The answer of one strategy in a race, which is either a result or the exception the strategy threw.
+     */
+    private record Entry(int strategy, SolveResult result, RuntimeException failure){}
+
+    /**
+     * Creates a portfolio of the backtracking search with each branching heuristic and the exact cover search.
+     */
+    public PortfolioSolver(){
+        this(defaultStrategies());
+    }
+
+    /**
+     * Creates a portfolio of any engines
+     * @param strategies the engines to race, by the name their wins are reported under
+     * @throws IllegalArgumentException if there are no strategies
+     */
+    public PortfolioSolver(Map<String, ? extends SudokuEngine> strategies){
+        if (strategies.isEmpty()){
+            throw new IllegalArgumentException("A portfolio needs at least one strategy");
+        }
+        names = strategies.keySet().toArray(new String[0]);
+        engines = strategies.values().toArray(new SudokuEngine[0]);
+        wins = new LongAdder[names.length];
+        for (int i = 0; i < wins.length; i++){
+            wins[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Lists the engines a portfolio races by default, each under the name its wins are reported under. The
+     * backtracking strategies record their solves in private metrics, since the solver using them records its own.
+     * @return the strategies, in order
+     */
+    static Map<String, SudokuEngine> defaultStrategies(){
+        Map<String, SudokuEngine> strategies = new LinkedHashMap<>();
+        strategies.put("mrv", new SudokuSolver(new MinimumRemainingValuesSelector(), Propagator.Level.FULL, null,
+                new SolverMetrics()));
+        strategies.put("row-major", new SudokuSolver(new RowMajorSelector(), Propagator.Level.FULL, null,
+                new SolverMetrics()));
+        strategies.put("dlx", new DancingLinksSolver());
+        return strategies;
+    }
+
+    /**
+     * Races every strategy on the puzzle.
+     * @param sc the Sudoku puzzle to solve, which is not changed
+     * @param budget the limits of every strategy's solve; cancelling it cancels the whole race
+     * @return the winner's result, or the last strategy's result if none of them finished within the budget
+     * @throws RuntimeException the exception of the last strategy to fail, if every strategy failed
+     */
+    @Override
+    public SolveResult solve(SudokuConfig sc, Budget budget){
+        Budget[] budgets = new Budget[engines.length];
+        BlockingQueue<Entry> answers = new LinkedBlockingQueue<>();
+        int started = 0;
+        try{
+            for (int i = 0; i < engines.length; i++){
+                int strategy = i;
+                budgets[i] = budget.child();
+                threads.execute(() -> {
+                    try{
+                        answers.add(new Entry(strategy, engines[strategy].solve(sc, budgets[strategy]), null));
+                    }
+                    catch (RuntimeException e){
+                        answers.add(new Entry(strategy, null, e));
+                    }
+                });
+                started++;
+            }
+
+            SolveResult last = null;
+            RuntimeException failure = null;
+            for (int i = 0; i < started; i++){
+                Entry entry = answers.take();
+                if (entry.failure() != null){
+                    failure = entry.failure();
+                    continue;
+                }
+                last = entry.result();
+                if (isConclusive(last.getStatus())){
+                    wins[entry.strategy()].increment();
+                    races.increment();
+                    return metrics.record(last);
+                }
+            }
+            if (last == null){
+                throw failure;
+            }
+            return metrics.record(last);
+        }
+        catch (InterruptedException e){
+            Thread.currentThread().interrupt();
+            return metrics.record(new SolveResult(SolveResult.Status.CANCELLED, null, SolveStats.NONE));
+        }
+        catch (RejectedExecutionException e){
+            throw new IllegalStateException("The portfolio has been closed", e);
+        }
+        finally{
+            for (int i = 0; i < started; i++){
+                budgets[i].cancel();
+            }
+        }
+    }
+
+    /**
+     * Does a status settle the puzzle, so the other strategies can stop?
+     */
+    private static boolean isConclusive(SolveResult.Status status){
+        return status == SolveResult.Status.SOLVED || status == SolveResult.Status.NO_SOLUTION
+                || status == SolveResult.Status.INVALID;
+    }
+
+    /**
+     * Gets the names of the strategies, in the order they were given
+     * @return the names
+     */
+    public List<String> getStrategies(){
+        return List.of(names);
+    }
+
+    /**
+     * Gets how many races each strategy has won
+     * @return the win counts by strategy name, in the order the strategies were given
+     */
+    public Map<String, Long> getWins(){
+        Map<String, Long> counts = new LinkedHashMap<>();
+        for (int i = 0; i < names.length; i++){
+            counts.put(names[i], wins[i].sum());
+        }
+        return counts;
+    }
+
+    /**
+     * Gets the number of races some strategy won, leaving out the ones where every strategy ran out of budget
+     * @return the race count
+     */
+    public long getRaces(){
+        return races.sum();
+    }
+
+    /**
+     * Gets the metrics this solver's solves are added to
+     * @return the metrics
+     */
+    public SolverMetrics getMetrics(){
+        return metrics;
+    }
+
+    /**
+     * Stops the strategies' threads once the races under way have finished. Later solves fail.
+     */
+    @Override
+    public void close(){
+        threads.shutdown();
+    }
+
+    @Override
+    public String toString(){
+        return "PortfolioSolver[races=" + races + ", wins=" + getWins() + "]";
+    }
+}
@@ -0,0 +1,432 @@
+package solver;
+
+import config.Geometry;
+import config.SudokuBoard;
+import main.CandidateScan;
+import main.Candidates;
+
+/**
+ * Applies logical sudoku techniques to a board until none of them can make any more progress.
+ * <p>
+ * Singles are tried first since they are cheap and place digits. The remaining techniques only remove
+ * candidates, so whenever one of them succeeds the singles are tried again before anything else.
+ * All changes go through the board's trail, so a propagation done inside a search is rolled back with
+ * the placement that caused it. A propagator keeps scratch space for its unit scans and is not thread safe.
+ *
+ * @author Dylan Sturr
+ */
+public class Propagator {
+    /**
+     * How much logic to apply.
+     */
+    public enum Level {
+        /** No logic at all, leaving everything to the search */
+        NONE,
+        /** Naked and hidden singles */
+        SINGLES,
+        /** Singles, plus naked and hidden pairs and triples, pointing pairs, and box-line reduction */
+        FULL
+    }
+
+    /**
+     * The techniques a deduction can rely on, from the easiest to the hardest.
+     */
+    public enum Technique {
+        NAKED_SINGLE("naked single"),
+        HIDDEN_SINGLE("hidden single"),
+        NAKED_SUBSET("naked pair or triple"),
+        HIDDEN_SUBSET("hidden pair or triple"),
+        INTERSECTION("pointing pair or box-line reduction");
+
+        private final String description;
+
+        Technique(String description){
+            this.description = description;
+        }
+
+        @Override
+        public String toString(){
+            return description;
+        }
+    }
+
+    /**
+     * A digit that logic alone places in a cell.
+     * @param cell the cell index
+     * @param digit the digit that must go there
+     * @param technique the hardest technique needed to find it
+     */
+    public record Deduction(int cell, int digit, Technique technique){}
+
+    private final Level level;
+    private final int[] cells = new int[Geometry.MAX_DIM];
+    private final int[] masks = new int[Geometry.MAX_DIM];
+    private final int[] positions = new int[Geometry.MAX_DIM];
+    private CandidateScan scan;
+    private long placements;
+
+    /**
+     * Creates a propagator
+     * @param level the techniques to apply
+     */
+    public Propagator(Level level){
+        this.level = level;
+    }
+
+    /**
+     * Gets the number of digits this propagator has placed as naked or hidden singles, over every board it has been given
+     * @return the placement count
+     */
+    public long placements(){
+        return placements;
+    }
+
+    /**
+     * Applies the techniques of this propagator's level until the board stops changing.
+     * @param board the board to simplify in place
+     * @return false if the board turned out to have no solution
+     */
+    public boolean propagate(SudokuBoard board){
+        if (level == Level.NONE){
+            return true;
+        }
+        while (true){
+            int placed = singles(board);
+            if (placed < 0){
+                return false;
+            }
+            placements += placed;
+            if (board.isFull()){
+                return true;
+            }
+            if (placed == 0 && (level == Level.SINGLES || eliminations(board) == null)){
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Places every naked single, then every hidden single, once.
+     * @param board the board
+     * @return the number of digits placed, or -1 if a cell or unit ran out of options
+     */
+    private int singles(SudokuBoard board){
+        Geometry geometry = board.geometry();
+        int placed = 0;
+        for (int cell = 0; cell < geometry.cells(); cell++){
+            if (board.get(cell) == 0){
+                int mask = board.candidates(cell);
+                if (mask == 0){
+                    return -1;
+                }
+                if ((mask & (mask - 1)) == 0){
+                    board.place(cell, SudokuBoard.digit(mask));
+                    placed++;
+                }
+            }
+        }
+
+        for (int u = 0; u < geometry.unitCount(); u++){
+            int[] unit = geometry.unit(u);
+            if (Candidates.coveredDigits(board, unit) != geometry.all()){
+                return -1;
+            }
+            for (int singles = Candidates.hiddenSingles(board, unit); singles != 0; singles &= singles - 1){
+                int b = singles & -singles;
+                int cell = find(board, unit, b);
+                if (cell < 0 || !board.place(cell, SudokuBoard.digit(b))){
+                    return -1;
+                }
+                placed++;
+            }
+        }
+        return placed;
+    }
+
+    /**
+     * Finds the easiest digit that the techniques of this propagator's level can place, without changing the board.
+     * Singles are looked for first. If there are none, candidates are eliminated one technique at a time until a
+     * single appears, and every elimination is undone before returning.
+     * @param board the board, which must not be full
+     * @return the deduction, or null if the techniques get stuck or the board turns out to have no solution
+     */
+    public Deduction nextDeduction(SudokuBoard board){
+        if (level == Level.NONE){
+            return null;
+        }
+        int mark = board.mark();
+        try{
+            Technique hardest = Technique.NAKED_SINGLE;
+            while (true){
+                Deduction single = findSingle(board, hardest);
+                if (single != null || level == Level.SINGLES){
+                    return single;
+                }
+                Technique used = eliminations(board);
+                if (used == null){
+                    return null;
+                }
+                if (used.compareTo(hardest) > 0){
+                    hardest = used;
+                }
+            }
+        }
+        finally{
+            board.undo(mark);
+        }
+    }
+
+    /**
+     * Finds a naked single, or failing that a hidden single, without placing it. Every single on the board is found
+     * in one {@link CandidateScan} sweep, since after an elimination any cell or unit may hold the next one.
+     * @param hardest the hardest technique used so far, which the deduction reports if it is harder than the single
+     * @return the single, or null if there is none or the board has a contradiction
+     */
+    private Deduction findSingle(SudokuBoard board, Technique hardest){
+        if (scan == null || scan.geometry() != board.geometry()){
+            scan = new CandidateScan(board.geometry());
+        }
+        if (!scan.scan(board).isConsistent()){
+            return null;
+        }
+        if (scan.nakedSingleCount() > 0){
+            int cell = scan.nakedSingle(0);
+            return new Deduction(cell, SudokuBoard.digit(scan.candidates(cell)), hardest);
+        }
+        Technique technique = hardest.compareTo(Technique.HIDDEN_SINGLE) > 0 ? hardest : Technique.HIDDEN_SINGLE;
+        for (int u = 0; u < board.geometry().unitCount(); u++){
+            int singles = scan.hiddenSingles(u);
+            if (singles != 0){
+                int b = singles & -singles;
+                return new Deduction(scan.find(u, b), SudokuBoard.digit(b), technique);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Runs the candidate elimination techniques, stopping at the first one that removes anything.
+     * @param board the board
+     * @return the technique that removed a candidate, or null if none did
+     */
+    private Technique eliminations(SudokuBoard board){
+        Geometry geometry = board.geometry();
+        for (int u = 0; u < geometry.unitCount(); u++){
+            if (nakedSubsets(board, geometry.unit(u))){
+                return Technique.NAKED_SUBSET;
+            }
+        }
+        for (int u = 0; u < geometry.unitCount(); u++){
+            if (hiddenSubsets(board, u)){
+                return Technique.HIDDEN_SUBSET;
+            }
+        }
+        return intersections(board) ? Technique.INTERSECTION : null;
+    }
+
+    /**
+     * Finds two cells of a unit that share the same two candidates, or three cells whose candidates
+     * only cover three digits. Those digits must go in those cells, so they are removed from the rest of the unit.
+     * @param board the board
+     * @param unit the cells of the unit
+     * @return whether any candidate was removed
+     */
+    private boolean nakedSubsets(SudokuBoard board, int[] unit){
+        int n = 0;
+        for (int cell : unit){
+            int count = Integer.bitCount(board.candidates(cell));
+            if (count == 2 || count == 3){
+                cells[n] = cell;
+                masks[n] = board.candidates(cell);
+                n++;
+            }
+        }
+
+        boolean changed = false;
+        for (int i = 0; i < n; i++){
+            for (int j = i + 1; j < n; j++){
+                int pair = masks[i] | masks[j];
+                if (Integer.bitCount(pair) == 2){
+                    changed |= eliminateOutside(board, unit, pair, cells[i], cells[j], -1);
+                }
+                for (int k = j + 1; k < n; k++){
+                    int triple = pair | masks[k];
+                    if (Integer.bitCount(triple) == 3){
+                        changed |= eliminateOutside(board, unit, triple, cells[i], cells[j], cells[k]);
+                    }
+                }
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Finds two digits that can only go in the same two cells of a unit, or three digits confined to
+     * three cells. Those cells must hold those digits, so every other candidate is removed from them.
+     * @param board the board
+     * @param u the unit index
+     * @return whether any candidate was removed
+     */
+    private boolean hiddenSubsets(SudokuBoard board, int u){
+        Geometry geometry = board.geometry();
+        int dim = geometry.dim();
+        int[] unit = geometry.unit(u);
+        int open = geometry.all() & ~board.unitUsed(u);
+        for (int d = 0; d < dim; d++){
+            positions[d] = 0;
+        }
+        for (int i = 0; i < dim; i++){
+            for (int mask = board.candidates(unit[i]); mask != 0; mask &= mask - 1){
+                positions[Integer.numberOfTrailingZeros(mask)] |= 1 << i;
+            }
+        }
+
+        boolean changed = false;
+        for (int a = 0; a < dim; a++){
+            if ((open & (1 << a)) == 0 || Integer.bitCount(positions[a]) > 3){
+                continue;
+            }
+            for (int b = a + 1; b < dim; b++){
+                if ((open & (1 << b)) == 0 || Integer.bitCount(positions[b]) > 3){
+                    continue;
+                }
+                int pair = positions[a] | positions[b];
+                if (Integer.bitCount(pair) == 2){
+                    changed |= restrict(board, unit, pair, (1 << a) | (1 << b));
+                }
+                for (int c = b + 1; c < dim; c++){
+                    if ((open & (1 << c)) == 0){
+                        continue;
+                    }
+                    int triple = pair | positions[c];
+                    if (Integer.bitCount(triple) == 3){
+                        changed |= restrict(board, unit, triple, (1 << a) | (1 << b) | (1 << c));
+                    }
+                }
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Handles the overlap between boxes and lines. When a digit's cells in a box all lie on one line,
+     * it is removed from the rest of that line (pointing pairs). When a digit's cells on a line all lie in one box,
+     * it is removed from the rest of that box (box-line reduction).
+     * @param board the board
+     * @return whether any candidate was removed
+     */
+    private boolean intersections(SudokuBoard board){
+        Geometry geometry = board.geometry();
+        int dim = geometry.dim();
+        boolean changed = false;
+        for (int box = 0; box < dim; box++){
+            int u = 2 * dim + box;
+            for (int open = geometry.all() & ~board.unitUsed(u); open != 0; open &= open - 1){
+                int b = open & -open;
+                int row = -1;
+                int col = -1;
+                for (int cell : geometry.unit(u)){
+                    if ((board.candidates(cell) & b) != 0){
+                        row = row == -1 || row == geometry.row(cell) ? geometry.row(cell) : -2;
+                        col = col == -1 || col == geometry.col(cell) ? geometry.col(cell) : -2;
+                    }
+                }
+                if (row >= 0){
+                    changed |= eliminateOutsideBox(board, geometry.unit(row), b, box);
+                }
+                if (col >= 0){
+                    changed |= eliminateOutsideBox(board, geometry.unit(dim + col), b, box);
+                }
+            }
+        }
+
+        for (int u = 0; u < 2 * dim; u++){
+            for (int open = geometry.all() & ~board.unitUsed(u); open != 0; open &= open - 1){
+                int b = open & -open;
+                int box = -1;
+                for (int cell : geometry.unit(u)){
+                    if ((board.candidates(cell) & b) != 0){
+                        box = box == -1 || box == geometry.boxOf(cell) ? geometry.boxOf(cell) : -2;
+                    }
+                }
+                if (box >= 0){
+                    for (int cell : geometry.unit(2 * dim + box)){
+                        boolean onLine = u < dim ? geometry.row(cell) == u : geometry.col(cell) == u - dim;
+                        if (!onLine && (board.candidates(cell) & b) != 0){
+                            board.eliminate(cell, SudokuBoard.digit(b));
+                            changed = true;
+                        }
+                    }
+                }
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Removes the digits of a mask from every cell of a unit except up to three kept cells.
+     * @return whether any candidate was removed
+     */
+    private static boolean eliminateOutside(SudokuBoard board, int[] unit, int digits, int keep1, int keep2, int keep3){
+        boolean changed = false;
+        for (int cell : unit){
+            if (cell != keep1 && cell != keep2 && cell != keep3){
+                changed |= eliminateAll(board, cell, digits);
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Removes a digit from the cells of a line that lie outside of a box.
+     * @return whether any candidate was removed
+     */
+    private static boolean eliminateOutsideBox(SudokuBoard board, int[] line, int b, int box){
+        boolean changed = false;
+        for (int cell : line){
+            if (board.geometry().boxOf(cell) != box && (board.candidates(cell) & b) != 0){
+                board.eliminate(cell, SudokuBoard.digit(b));
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Limits the cells at the given positions of a unit to the given digits.
+     * @return whether any candidate was removed
+     */
+    private static boolean restrict(SudokuBoard board, int[] unit, int positions, int digits){
+        boolean changed = false;
+        for (; positions != 0; positions &= positions - 1){
+            int cell = unit[Integer.numberOfTrailingZeros(positions)];
+            changed |= eliminateAll(board, cell, ~digits);
+        }
+        return changed;
+    }
+
+    /**
+     * Removes every digit of a mask from a cell's candidates.
+     * @return whether any candidate was removed
+     */
+    private static boolean eliminateAll(SudokuBoard board, int cell, int digits){
+        boolean changed = false;
+        for (int mask = board.candidates(cell) & digits; mask != 0; mask &= mask - 1){
+            changed |= board.eliminate(cell, SudokuBoard.digit(mask));
+        }
+        return changed;
+    }
+
+    /**
+     * Finds the first cell of a unit that has a candidate
+     * @return the cell index, or -1 if no cell has it
+     */
+    private static int find(SudokuBoard board, int[] unit, int b){
+        for (int cell : unit){
+            if ((board.candidates(cell) & b) != 0){
+                return cell;
+            }
+        }
+        return -1;
+    }
+}
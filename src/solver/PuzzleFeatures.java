@@ -0,0 +1,188 @@
+package solver;
+
+import config.Geometry;
+import config.SudokuBoard;
+
+/**
+ * A few cheap measurements of a puzzle that hint at how hard it is to search, taken before it is solved.
+ * <p>
+ * The clues and how evenly they are spread over the rows, columns, and boxes are read from the puzzle as given.
+ * The puzzle is then softened with every technique the propagator knows, and the rest are read from what is left:
+ * the empty cells, the average number of candidates per empty cell, and the cells down to two candidates.
+ * Softening is the same work a solve starts with, so the softened board is kept for the solve to start from.
+ * <p>
+ * The features are summed up in a {@link #bucket()}, which groups puzzles that are likely to favor the same engine.
+ *
+ * @author Dylan Sturr
+ */
+public class PuzzleFeatures {
+    /** One bucket for the puzzles softening settles, and one for each combination of the four feature bands */
+    private final static int BUCKETS_PER_SIZE = 1 + 16;
+    /** The number of buckets puzzles are sorted into */
+    public final static int BUCKETS = (Geometry.MAX_BOX - Geometry.MIN_BOX + 1) * BUCKETS_PER_SIZE;
+
+    private final Geometry geometry;
+    private final int clues;
+    private final double unitFillDeviation;
+    private final int minUnitFill;
+    private final int maxUnitFill;
+    private final boolean consistent;
+    private final int empty;
+    private final double candidateDensity;
+    private final int bivalueCells;
+    private final SudokuBoard softened;
+
+    private PuzzleFeatures(SudokuBoard puzzle){
+        geometry = puzzle.geometry();
+        int dim = geometry.dim();
+        clues = geometry.cells() - puzzle.emptyCount();
+
+        int min = dim;
+        int max = 0;
+        double squares = 0;
+        for (int unit = 0; unit < geometry.unitCount(); unit++){
+            int fill = Integer.bitCount(puzzle.unitUsed(unit));
+            min = Math.min(min, fill);
+            max = Math.max(max, fill);
+            squares += fill * fill;
+        }
+        double mean = (double) clues / dim;
+        minUnitFill = min;
+        maxUnitFill = max;
+        unitFillDeviation = Math.sqrt(Math.max(0, squares / geometry.unitCount() - mean * mean));
+
+        softened = new SudokuBoard(puzzle);
+        consistent = !softened.hasConflicts() && new Propagator(Propagator.Level.FULL).propagate(softened);
+        empty = softened.emptyCount();
+        long candidates = 0;
+        int bivalue = 0;
+        for (int cell = 0; cell < geometry.cells(); cell++){
+            if (softened.get(cell) == 0){
+                int count = Integer.bitCount(softened.candidates(cell));
+                candidates += count;
+                if (count == 2){
+                    bivalue++;
+                }
+            }
+        }
+        candidateDensity = empty == 0 ? 0 : (double) candidates / empty;
+        bivalueCells = bivalue;
+    }
+
+    /**
+     * Measures a puzzle
+     * @param puzzle the puzzle, which is not changed
+     * @return its features
+     */
+    public static PuzzleFeatures analyze(SudokuBoard puzzle){
+        return new PuzzleFeatures(puzzle);
+    }
+
+    /**
+     * Sorts the puzzle into a bucket by its size and a coarse band of each feature. Puzzles that softening solves
+     * or proves impossible get a bucket of their own for their size, since every engine finishes them at once.
+     * Otherwise the bucket splits on whether more than a quarter of the cells are clues, whether the empty cells average
+     * more than four ninths of the digits as candidates, whether an eighth of them are down to two candidates, and
+     * whether the clue counts of the units vary by more than 40% of their mean. Each threshold splits the puzzles of
+     * the corpus that softening does not finish roughly in half.
+     * @return the bucket, from 0 to {@link #BUCKETS} - 1
+     */
+    public int bucket(){
+        int base = (geometry.box() - Geometry.MIN_BOX) * BUCKETS_PER_SIZE;
+        if (empty == 0 || !consistent){
+            return base;
+        }
+        int dim = geometry.dim();
+        int band = (4 * clues > geometry.cells() ? 1 : 0)
+                | (9 * candidateDensity > 4 * dim ? 2 : 0)
+                | (8 * bivalueCells >= empty ? 4 : 0)
+                | (5 * unitFillDeviation > 2.0 * clues / dim ? 8 : 0);
+        return base + 1 + band;
+    }
+
+    /**
+     * Gets the size of the puzzle
+     * @return the geometry
+     */
+    public Geometry getGeometry(){
+        return geometry;
+    }
+
+    /**
+     * Gets the number of clues given
+     * @return the clue count
+     */
+    public int getClues(){
+        return clues;
+    }
+
+    /**
+     * Gets how unevenly the clues are spread over the units
+     * @return the standard deviation of the number of clues in each row, column, and box
+     */
+    public double getUnitFillDeviation(){
+        return unitFillDeviation;
+    }
+
+    /**
+     * Gets the number of clues in the emptiest unit
+     * @return the fewest clues in any row, column, or box
+     */
+    public int getMinUnitFill(){
+        return minUnitFill;
+    }
+
+    /**
+     * Gets the number of clues in the fullest unit
+     * @return the most clues in any row, column, or box
+     */
+    public int getMaxUnitFill(){
+        return maxUnitFill;
+    }
+
+    /**
+     * Did softening leave the puzzle without a contradiction?
+     * @return false if the clues conflict or softening left a cell or a digit with no place to go
+     */
+    public boolean isConsistent(){
+        return consistent;
+    }
+
+    /**
+     * Gets the number of cells still empty after softening
+     * @return the empty count
+     */
+    public int getEmptyAfterSoften(){
+        return empty;
+    }
+
+    /**
+     * Gets how many candidates the cells left empty by softening have on average
+     * @return the mean candidate count, or 0 if softening filled every cell
+     */
+    public double getCandidateDensity(){
+        return candidateDensity;
+    }
+
+    /**
+     * Gets the number of cells left empty by softening that are down to two candidates
+     * @return the bivalue cell count
+     */
+    public int getBivalueCells(){
+        return bivalueCells;
+    }
+
+    /**
+     * Gets the puzzle after softening, which a solve can start from instead of the puzzle as given
+     * @return the softened board, which the caller may change
+     */
+    SudokuBoard softened(){
+        return softened;
+    }
+
+    @Override
+    public String toString(){
+        return String.format("PuzzleFeatures[%s, clues=%d, fill=%d..%d sd %.2f, empty=%d, density=%.2f, bivalue=%d, bucket=%d]",
+                geometry, clues, minUnitFill, maxUnitFill, unitFillDeviation, empty, candidateDensity, bivalueCells, bucket());
+    }
+}
@@ -0,0 +1,26 @@
+package solver;
+
+import config.SudokuBoard;
+
+/**
+ * Branches on the first empty cell in row-major order, which is how the solver originally walked the board.
+ *
+ * @author Dylan Sturr
+ */
+public class RowMajorSelector implements CellSelector {
+    /**
+     * Picks the first empty cell, reading left to right and top to bottom
+     * @param board the board being searched
+     * @return the index of the first empty cell, or -1 if the board is full
+     */
+    @Override
+    public int select(SudokuBoard board){
+        int cells = board.geometry().cells();
+        for (int cell = 0; cell < cells; cell++){
+            if (board.get(cell) == 0){
+                return cell;
+            }
+        }
+        return -1;
+    }
+}
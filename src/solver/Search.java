@@ -0,0 +1,135 @@
+package solver;
+
+import config.SudokuBoard;
+
+/**
+ * A single backtracking search over one board, which it changes in place and undoes through the board's trail.
+ * Every solution it finds is reported to the search's {@link SearchControl}, which also lets other threads
+ * stop the search; the flag is checked at every node, and the solve's budget every {@link #CHECK_INTERVAL} nodes.
+ * <p>
+ * The search is a loop over an explicit stack rather than a recursion. Each level of the stack holds the cell being
+ * branched on, the candidates of that cell not tried yet, and the trail mark to undo to before trying the next one.
+ * The stack is allocated once, one level per cell, so the search never allocates per node and its depth does not
+ * depend on the size of the thread's stack, however large the board.
+ * <p>
+ * The search counts the nodes it expands, the placements it undoes, and the deepest level it reaches,
+ * and adds them to the control when it finishes.
+ * <p>
+ * If the control has a {@link NogoodTable}, every node that survives propagation is looked up in it by the board's
+ * hash and treated as a dead end if it is there. A level whose candidates have all been tried without a solution
+ * turning up beneath it is added to the table as it is popped. A search that is stopped early never pops its
+ * levels, so nothing it has only partly explored is recorded.
+ *
+ * @author Dylan Sturr
+ */
+class Search {
+    /** How many nodes the search expands between checks of the budget */
+    private final static int CHECK_INTERVAL = 256;
+
+    private final SudokuBoard board;
+    private final CellSelector selector;
+    private final Propagator propagator;
+    private final SearchControl control;
+    private final int[] cells;
+    private final int[] remaining;
+    private final int[] marks;
+    private final long[] found;
+    private final NogoodTable nogoods;
+    private final int baseDepth;
+    private long solutions;
+    private long nodes;
+    private long reported;
+    private long backtracks;
+    private int maxDepth;
+
+    /**
+     * Prepares a search
+     * @param board the board to search, which is changed in place
+     * @param control the settings and results of the solve this search is part of
+     * @param baseDepth the number of branches taken before this search starts, for the depth statistics
+     */
+    Search(SudokuBoard board, SearchControl control, int baseDepth){
+        this.board = board;
+        this.baseDepth = baseDepth;
+        this.selector = control.selector();
+        this.propagator = new Propagator(control.level());
+        this.control = control;
+        this.nogoods = control.nogoods();
+        int depth = board.geometry().cells() + 1;
+        cells = new int[depth];
+        remaining = new int[depth];
+        marks = new int[depth];
+        found = nogoods == null ? null : new long[depth];
+    }
+
+    /**
+     * Runs the search until the whole tree is explored or the control says to stop.
+     * <p>
+     * Each pass of the loop expands the node the board is currently at: it propagates the latest placement, and
+     * either reports a solution or pushes the cell chosen by the selector. It then rolls the top of the stack back
+     * to its mark and places that cell's next candidate, popping every level that has run out of candidates.
+     */
+    void run(){
+        try{
+            explore();
+        }
+        finally{
+            control.record(nodes - reported, backtracks, baseDepth + maxDepth);
+        }
+    }
+
+    private void explore(){
+        int depth = 0;
+        while (!control.stopped()){
+            if (++nodes - reported >= CHECK_INTERVAL){
+                long since = nodes - reported;
+                reported = nodes;
+                if (control.checkpoint(since)){
+                    return;
+                }
+            }
+            if (propagator.propagate(board) && (nogoods == null || !nogoods.contains(board.hash()))){
+                int cell = selector.select(board);
+                if (cell < 0){
+                    solutions++;
+                    if (control.found(board)){
+                        return;
+                    }
+                }
+                else{
+                    cells[depth] = cell;
+                    remaining[depth] = board.candidates(cell);
+                    marks[depth] = board.mark();
+                    if (nogoods != null){
+                        found[depth] = solutions;
+                    }
+                    depth++;
+                    maxDepth = Math.max(maxDepth, depth);
+                }
+            }
+
+            boolean placed = false;
+            while (depth > 0 && !placed){
+                int top = depth - 1;
+                if (board.mark() != marks[top]){
+                    backtracks++;
+                    board.undo(marks[top]);
+                }
+                int mask = remaining[top];
+                if (mask == 0){
+                    if (nogoods != null && found[top] == solutions){
+                        nogoods.add(board.hash());
+                    }
+                    depth--;
+                }
+                else{
+                    remaining[top] = mask & (mask - 1);
+                    placed = board.place(cells[top], SudokuBoard.digit(mask));
+                }
+            }
+            if (!placed){
+                return;
+            }
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package solver;
+
+import config.SudokuBoard;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The settings and results shared by every search taking part in one solve, whether it runs on one thread
+ * or is split into many tasks. It counts the solutions found, keeps the first one, and tells every search to stop
+ * once enough solutions have been found, or once the solve's {@link Budget} runs out or is cancelled.
+ * It also totals the statistics of every search.
+ * <p>
+ * A control may carry a {@link NogoodTable} shared with other solves, which its searches consult and add to.
+ *
+ * @author Dylan Sturr
+ */
+class SearchControl {
+    private final CellSelector selector;
+    private final Propagator.Level level;
+    private final long limit;
+    private final Budget budget;
+    private final NogoodTable nogoods;
+    private final AtomicBoolean stop = new AtomicBoolean();
+    private final AtomicLong solutions = new AtomicLong();
+    private final AtomicReference<SudokuBoard> first = new AtomicReference<>();
+    private final LongAdder nodes = new LongAdder();
+    private final LongAdder backtracks = new LongAdder();
+    private final AtomicInteger maxDepth = new AtomicInteger();
+    private final AtomicReference<SolveResult.Status> interruption = new AtomicReference<>();
+
+    /**
+     * @param selector chooses the cell to branch on
+     * @param level the techniques applied at every node
+     * @param limit the number of solutions after which every search stops
+     * @param budget the limits of the solve
+     * @param nogoods the boards known to have no solution, or null to search without a table
+     */
+    SearchControl(CellSelector selector, Propagator.Level level, long limit, Budget budget, NogoodTable nogoods){
+        this.selector = selector;
+        this.level = level;
+        this.limit = limit;
+        this.budget = budget;
+        this.nogoods = nogoods;
+    }
+
+    CellSelector selector(){
+        return selector;
+    }
+
+    Propagator.Level level(){
+        return level;
+    }
+
+    NogoodTable nogoods(){
+        return nogoods;
+    }
+
+    /**
+     * Has the solve been stopped?
+     * @return whether every search should give up
+     */
+    boolean stopped(){
+        return stop.get();
+    }
+
+    /**
+     * Adds the nodes a search has expanded since its last checkpoint, and stops every search if the budget
+     * has run out or been cancelled.
+     * @param nodes the nodes expanded since the last checkpoint
+     * @return whether every search should give up
+     */
+    boolean checkpoint(long nodes){
+        this.nodes.add(nodes);
+        SolveResult.Status status = budget.check(this.nodes.sum());
+        if (status != null){
+            interruption.compareAndSet(null, status);
+            stop.set(true);
+        }
+        return stop.get();
+    }
+
+    /**
+     * Gets why the solve was cut short
+     * @return TIMED_OUT or CANCELLED, or null if the budget never stopped it
+     */
+    SolveResult.Status interruption(){
+        return interruption.get();
+    }
+
+    /**
+     * Records a solution, keeping a copy of it if it is the first.
+     * @param board the solved board, which the caller may keep changing
+     * @return whether the limit has been reached, in which case every search is told to stop
+     */
+    boolean found(SudokuBoard board){
+        if (first.get() == null){
+            first.compareAndSet(null, new SudokuBoard(board));
+        }
+        if (solutions.incrementAndGet() >= limit){
+            stop.set(true);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Gets the first solution found by any search
+     * @return the solved board, or null if there was none
+     */
+    SudokuBoard solution(){
+        return first.get();
+    }
+
+    /**
+     * Gets the number of solutions found, which never exceeds the limit
+     * @return the solution count
+     */
+    long solutions(){
+        return Math.min(solutions.get(), limit);
+    }
+
+    /**
+     * Adds the statistics of a search, or of one node of a split search
+     * @param nodes the nodes expanded
+     * @param backtracks the placements undone
+     * @param depth the deepest level of the tree reached
+     */
+    void record(long nodes, long backtracks, int depth){
+        this.nodes.add(nodes);
+        this.backtracks.add(backtracks);
+        maxDepth.accumulateAndGet(depth, Math::max);
+    }
+
+    long nodes(){
+        return nodes.sum();
+    }
+
+    long backtracks(){
+        return backtracks.sum();
+    }
+
+    int maxDepth(){
+        return maxDepth.get();
+    }
+}
@@ -0,0 +1,185 @@
+package solver;
+
+import config.Geometry;
+import config.SudokuBoard;
+import config.SudokuConfig;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Remembers the solutions of recently solved puzzles in front of another engine, so repeated puzzles skip the search.
+ * <p>
+ * Every puzzle is first reduced to its canonical form by a {@link Canonicalizer}, so a puzzle that is only a
+ * relabeling, transposition, rotation, or band and stack shuffle of a cached one is also a hit. Solutions are stored
+ * in canonical form and moved back into the caller's orientation and digits on the way out. Puzzles without a
+ * solution are cached as well. Puzzles with conflicting clues, puzzles larger than 9x9, and puzzles with fewer than
+ * {@link #MIN_CLUES} clues go straight to the engine, as do the few puzzles too symmetric to canonicalize cheaply.
+ * A nearly empty board cannot have a unique solution, so there is little to gain from caching it, and it costs far
+ * more to canonicalize than to solve.
+ * <p>
+ * The cache evicts its least recently used entries once it holds more entries or more bytes than its limits allow.
+ * It is safe to share between threads as long as the engine behind it is.
+ *
+ * @author Dylan Sturr
+ */
+public class SolutionCache implements SudokuEngine {
+    /** An estimate of what one entry costs: the key, the solution, and the map's own node */
+    private final static long ENTRY_BYTES = 2L * (16 + Geometry.CLASSIC.cells()) + 64;
+    /** Stands in for the solution of a puzzle that has none */
+    private final static byte[] NO_SOLUTION = new byte[0];
+    /** The fewest clues a 9x9 puzzle with a unique solution can have */
+    public final static int MIN_CLUES = 17;
+
+    private final SudokuEngine engine;
+    private final Canonicalizer canonicalizer = new Canonicalizer();
+    private final long maxEntries;
+    private final long maxBytes;
+    private final Map<Key, byte[]> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * The canonical digits of a puzzle, compared by content.
+     */
+    private record Key(byte[] digits){
+        @Override
+        public boolean equals(Object o){
+            return o instanceof Key other && Arrays.equals(digits, other.digits);
+        }
+
+        @Override
+        public int hashCode(){
+            return Arrays.hashCode(digits);
+        }
+    }
+
+    /**
+     * Creates a cache in front of an engine
+     * @param engine solves the puzzles that are not cached
+     * @param maxEntries the most puzzles to remember, or 0 for no limit on the count
+     * @param maxBytes roughly the most memory the entries may take up, or 0 for no limit on the size
+     */
+    public SolutionCache(SudokuEngine engine, long maxEntries, long maxBytes){
+        this.engine = engine;
+        this.maxEntries = maxEntries > 0 ? maxEntries : Long.MAX_VALUE;
+        this.maxBytes = maxBytes > 0 ? maxBytes : Long.MAX_VALUE;
+    }
+
+    /**
+     * Looks the puzzle up in the cache, and solves it with the engine behind the cache if it is not there.
+     * A solve that runs out of budget is not cached, so the puzzle is tried again the next time it comes up.
+     * @param sc the Sudoku puzzle to solve
+     * @param budget the limits of the engine's solve on a miss
+     * @return how the solve ended, the solution if there is one, and the engine's statistics on a miss
+     */
+    @Override
+    public SolveResult solve(SudokuConfig sc, Budget budget){
+        SudokuBoard board = sc.getBoard();
+        if (board.geometry() != Geometry.CLASSIC || board.hasConflicts()
+                || board.geometry().cells() - board.emptyCount() < MIN_CLUES){
+            return engine.solve(sc, budget);
+        }
+        Canonicalizer.Form form;
+        try{
+            form = canonicalizer.canonicalize(board);
+        }
+        catch (IllegalArgumentException e){
+            return engine.solve(sc, budget);
+        }
+        Key key = new Key(form.digits());
+        byte[] cached;
+        synchronized (entries){
+            cached = entries.get(key);
+        }
+        if (cached != null){
+            hits.incrementAndGet();
+            return cached == NO_SOLUTION ? new SolveResult(SolveResult.Status.NO_SOLUTION, null, SolveStats.NONE)
+                    : new SolveResult(SolveResult.Status.SOLVED,
+                            new SudokuConfig(new SudokuBoard(form.toOriginal(cached))), SolveStats.NONE);
+        }
+
+        misses.incrementAndGet();
+        SolveResult result = engine.solve(sc, budget);
+        Optional<SudokuConfig> solution = result.getSolution();
+        if (solution.isPresent()){
+            byte[] digits = new byte[Geometry.CLASSIC.cells()];
+            for (int cell = 0; cell < digits.length; cell++){
+                digits[cell] = (byte) solution.get().getBoard().get(cell);
+            }
+            put(key, form.toCanonical(digits));
+        }
+        else if (result.getStatus() == SolveResult.Status.NO_SOLUTION){
+            put(key, NO_SOLUTION);
+        }
+        return result;
+    }
+
+    /**
+     * Adds an entry, evicting the least recently used entries until the cache is back within its limits.
+     */
+    private void put(Key key, byte[] value){
+        synchronized (entries){
+            entries.put(key, value);
+            Iterator<Key> eldest = entries.keySet().iterator();
+            while (entries.size() > maxEntries || entries.size() * ENTRY_BYTES > maxBytes){
+                eldest.next();
+                eldest.remove();
+                evictions.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Gets the number of puzzles answered from the cache
+     * @return the hit count
+     */
+    public long getHits(){
+        return hits.get();
+    }
+
+    /**
+     * Gets the number of puzzles that had to be solved
+     * @return the miss count
+     */
+    public long getMisses(){
+        return misses.get();
+    }
+
+    /**
+     * Gets the number of entries dropped to stay within the limits
+     * @return the eviction count
+     */
+    public long getEvictions(){
+        return evictions.get();
+    }
+
+    /**
+     * Gets the number of puzzles currently cached
+     * @return the entry count
+     */
+    public int size(){
+        synchronized (entries){
+            return entries.size();
+        }
+    }
+
+    /**
+     * Empties the cache, keeping the counters.
+     */
+    public void clear(){
+        synchronized (entries){
+            entries.clear();
+        }
+    }
+
+    @Override
+    public String toString(){
+        return "SolutionCache[size=" + size() + ", hits=" + hits + ", misses=" + misses + ", evictions=" + evictions + "]";
+    }
+}
@@ -0,0 +1,171 @@
+package solver;
+
+import config.SudokuBoard;
+import config.SudokuConfig;
+
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * Walks the solutions of a puzzle one at a time, for {@link SudokuSolver#solutions(SudokuConfig)}.
+ * <p>
+ * This is the same explicit-stack search as {@link Search}, stopped after every solution instead of running to the
+ * end, so a stream only explores as much of the tree as its consumer asks for. {@link #trySplit()} hands the
+ * untried candidates of the shallowest level that has any to a new spliterator, on its own copy of the board rolled
+ * back to that level, so a parallel stream divides the largest remaining subtrees between its workers first.
+ * Solutions do not come out in any particular order once the search has been split.
+ *
+ * @author Dylan Sturr
+ */
+class SolutionSpliterator implements Spliterator<SudokuConfig> {
+    private final SudokuBoard board;
+    private final CellSelector selector;
+    private final Propagator.Level level;
+    private final Propagator propagator;
+    private final int[] cells;
+    private final int[] remaining;
+    private final int[] marks;
+    private int depth;
+    /** Whether the board sits at a node that has not been propagated and branched on yet */
+    private boolean expand;
+    /** A nominal size that halves with every split, so streams stop splitting after a few levels */
+    private long estimate = Long.MAX_VALUE;
+
+    /**
+     * Creates a spliterator over every solution of a board
+     * @param board the board to search, which is changed in place
+     * @param selector chooses the cell to branch on
+     * @param level the techniques applied at every node
+     */
+    SolutionSpliterator(SudokuBoard board, CellSelector selector, Propagator.Level level){
+        this.board = board;
+        this.selector = selector;
+        this.level = level;
+        this.propagator = new Propagator(level);
+        int size = board.geometry().cells() + 1;
+        cells = new int[size];
+        remaining = new int[size];
+        marks = new int[size];
+        expand = true;
+    }
+
+    /**
+     * Creates a spliterator over the subtrees reached by placing some of the candidates of one cell
+     * @param board the board, at the node where the cell is branched on
+     * @param cell the cell
+     * @param candidates the candidates of the cell this spliterator tries
+     * @param estimate the nominal size of the new spliterator
+     */
+    private SolutionSpliterator(SudokuBoard board, CellSelector selector, Propagator.Level level, int cell, int candidates,
+                                long estimate){
+        this(board, selector, level);
+        this.estimate = estimate;
+        cells[0] = cell;
+        remaining[0] = candidates;
+        marks[0] = board.mark();
+        depth = 1;
+        expand = false;
+    }
+
+    /**
+     * Searches on to the next solution.
+     * @param action given a copy of the solution
+     * @return false once every solution has been given out
+     */
+    @Override
+    public boolean tryAdvance(Consumer<? super SudokuConfig> action){
+        while (true){
+            if (expand){
+                expand = false;
+                if (propagator.propagate(board)){
+                    int cell = selector.select(board);
+                    if (cell < 0){
+                        action.accept(new SudokuConfig(new SudokuBoard(board)));
+                        return true;
+                    }
+                    push(cell);
+                }
+            }
+
+            while (!expand && depth > 0){
+                int top = depth - 1;
+                board.undo(marks[top]);
+                int mask = remaining[top];
+                if (mask == 0){
+                    depth--;
+                }
+                else{
+                    remaining[top] = mask & (mask - 1);
+                    expand = board.place(cells[top], SudokuBoard.digit(mask));
+                }
+            }
+            if (!expand){
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Gives away half of the untried candidates of the shallowest level that has any, along with everything
+     * below them.
+     * @return a spliterator over the candidates given away, or null if there is nothing left to split
+     */
+    @Override
+    public Spliterator<SudokuConfig> trySplit(){
+        if (expand && depth == 0){
+            // branch on the root first, so there is something to split; a solved root is left for tryAdvance
+            if (!propagator.propagate(board)){
+                expand = false;
+                return null;
+            }
+            int cell = selector.select(board);
+            if (cell < 0){
+                return null;
+            }
+            push(cell);
+            expand = false;
+        }
+
+        for (int split = 0; split < depth; split++){
+            int mask = remaining[split];
+            if (mask != 0){
+                // keep the lower half, which this spliterator would try first, and give away the rest
+                int given = mask;
+                for (int i = Integer.bitCount(mask) / 2; i > 0; i--){
+                    given &= given - 1;
+                }
+                remaining[split] = mask & ~given;
+                SudokuBoard copy = new SudokuBoard(board);
+                copy.undo(marks[split]);
+                estimate >>>= 1;
+                return new SolutionSpliterator(copy, selector, level, cells[split], given, estimate);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Pushes a level for branching on a cell of the current node.
+     */
+    private void push(int cell){
+        cells[depth] = cell;
+        remaining[depth] = board.candidates(cell);
+        marks[depth] = board.mark();
+        depth++;
+    }
+
+    /**
+     * The number of solutions is not known until they have been found, so like
+     * {@link java.util.Spliterators.AbstractSpliterator} this starts at Long.MAX_VALUE and halves with every split.
+     * @return the nominal size
+     */
+    @Override
+    public long estimateSize(){
+        return estimate;
+    }
+
+    @Override
+    public int characteristics(){
+        return NONNULL | DISTINCT | IMMUTABLE;
+    }
+}
@@ -0,0 +1,72 @@
+package solver;
+
+import config.SudokuConfig;
+
+import java.util.Optional;
+
+/**
+ * The outcome of one solve: how it ended, the solution if there is one, and the statistics of the work it took.
+ *
+ * @author Dylan Sturr
+ */
+public class SolveResult {
+    /**
+     * How a solve ended.
+     */
+    public enum Status {
+        /** A solution was found */
+        SOLVED,
+        /** The whole search tree was explored without finding a solution */
+        NO_SOLUTION,
+        /** The clues conflict with each other, so the puzzle was not searched */
+        INVALID,
+        /** The solve ran out of time or nodes before finding a solution or ruling one out */
+        TIMED_OUT,
+        /** The solve was cancelled before finding a solution or ruling one out */
+        CANCELLED
+    }
+
+    private final Status status;
+    private final SudokuConfig solution;
+    private final SolveStats stats;
+
+    /**
+     * @param status how the solve ended
+     * @param solution the solved puzzle, or null if there is none
+     * @param stats the statistics of the solve
+     */
+    public SolveResult(Status status, SudokuConfig solution, SolveStats stats){
+        this.status = status;
+        this.solution = solution;
+        this.stats = stats;
+    }
+
+    /**
+     * Gets how the solve ended
+     * @return the status
+     */
+    public Status getStatus(){
+        return status;
+    }
+
+    /**
+     * Gets the solution
+     * @return the solved puzzle, or Optional.empty() if the solve did not find one
+     */
+    public Optional<SudokuConfig> getSolution(){
+        return Optional.ofNullable(solution);
+    }
+
+    /**
+     * Gets the statistics of the solve
+     * @return the statistics
+     */
+    public SolveStats getStats(){
+        return stats;
+    }
+
+    @Override
+    public String toString(){
+        return status + " " + stats;
+    }
+}
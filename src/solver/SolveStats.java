@@ -0,0 +1,114 @@
+package solver;
+
+/**
+ * What one solve did and where its time went.
+ * <p>
+ * A solve has three phases: validation copies the puzzle and checks its clues for conflicts, propagation applies the
+ * solver's techniques to the puzzle before any guess is made, and search is the backtracking that follows. Singles
+ * are the digits placed during that first propagation, the same ones {@link SudokuSolver#soften(config.SudokuConfig)}
+ * would place. The node, backtrack, and depth counts cover the search, including any tasks it was split into.
+ *
+ * @author Dylan Sturr
+ */
+public class SolveStats {
+    /** The statistics of a solve that did no work, such as one answered from a cache */
+    public final static SolveStats NONE = new SolveStats(0, 0, 0, 0, 0, 0, 0);
+
+    private final long nodes;
+    private final long backtracks;
+    private final int maxDepth;
+    private final long singles;
+    private final long validationNanos;
+    private final long propagationNanos;
+    private final long searchNanos;
+
+    /**
+     * @param nodes the search nodes expanded
+     * @param backtracks the placements the search undid
+     * @param maxDepth the most guesses in force at once
+     * @param singles the digits placed by propagation before the search
+     * @param validationNanos the time spent checking the clues
+     * @param propagationNanos the time spent propagating before the search
+     * @param searchNanos the time spent searching
+     */
+    public SolveStats(long nodes, long backtracks, int maxDepth, long singles,
+                      long validationNanos, long propagationNanos, long searchNanos){
+        this.nodes = nodes;
+        this.backtracks = backtracks;
+        this.maxDepth = maxDepth;
+        this.singles = singles;
+        this.validationNanos = validationNanos;
+        this.propagationNanos = propagationNanos;
+        this.searchNanos = searchNanos;
+    }
+
+    /**
+     * Gets the number of search nodes expanded, where a node is a board the search propagated and branched on
+     * @return the node count
+     */
+    public long getNodes(){
+        return nodes;
+    }
+
+    /**
+     * Gets the number of placements the search undid to try another candidate or to back out of a cell
+     * @return the backtrack count
+     */
+    public long getBacktracks(){
+        return backtracks;
+    }
+
+    /**
+     * Gets the deepest level of the search tree reached
+     * @return the most guesses in force at once
+     */
+    public int getMaxDepth(){
+        return maxDepth;
+    }
+
+    /**
+     * Gets the number of digits placed as naked or hidden singles before the search started
+     * @return the single count
+     */
+    public long getSingles(){
+        return singles;
+    }
+
+    /**
+     * Gets the time spent copying the puzzle and checking its clues
+     * @return the time in nanoseconds
+     */
+    public long getValidationNanos(){
+        return validationNanos;
+    }
+
+    /**
+     * Gets the time spent propagating before the search
+     * @return the time in nanoseconds
+     */
+    public long getPropagationNanos(){
+        return propagationNanos;
+    }
+
+    /**
+     * Gets the time spent searching
+     * @return the time in nanoseconds
+     */
+    public long getSearchNanos(){
+        return searchNanos;
+    }
+
+    /**
+     * Gets the time spent on the whole solve
+     * @return the time in nanoseconds
+     */
+    public long getTotalNanos(){
+        return validationNanos + propagationNanos + searchNanos;
+    }
+
+    @Override
+    public String toString(){
+        return String.format("nodes=%d backtracks=%d depth=%d singles=%d validation=%.3fms propagation=%.3fms search=%.3fms",
+                nodes, backtracks, maxDepth, singles, validationNanos / 1e6, propagationNanos / 1e6, searchNanos / 1e6);
+    }
+}
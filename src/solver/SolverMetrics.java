@@ -0,0 +1,200 @@
+package solver;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Totals the {@link SolveStats} of every solve made by one kind of solver, along with a histogram of solve latencies,
+ * and publishes them on the platform MBean server as {@code solver:type=SolverMetrics,name=...}.
+ * <p>
+ * Solvers with the same heuristic and level share one set of metrics, so two heuristics can be compared side by side
+ * in JConsole while a batch runs, and an unusually slow puzzle shows up in the tail percentiles.
+ *
+ * @author Dylan Sturr
+ */
+public class SolverMetrics implements SolverMetricsMBean {
+    private final static Map<String, SolverMetrics> REGISTRY = new ConcurrentHashMap<>();
+
+    private final LongAdder solved = new LongAdder();
+    private final LongAdder noSolution = new LongAdder();
+    private final LongAdder invalid = new LongAdder();
+    private final LongAdder timedOut = new LongAdder();
+    private final LongAdder cancelled = new LongAdder();
+    private final LongAdder nodes = new LongAdder();
+    private final LongAdder backtracks = new LongAdder();
+    private final AtomicInteger maxDepth = new AtomicInteger();
+    private final LongAdder singles = new LongAdder();
+    private final LongAdder validationNanos = new LongAdder();
+    private final LongAdder propagationNanos = new LongAdder();
+    private final LongAdder searchNanos = new LongAdder();
+    private final LatencyHistogram latencies = new LatencyHistogram();
+
+    /**
+     * Gets the metrics with a given name, creating and registering them the first time they are asked for.
+     * If the MBean server refuses them they are still kept, just not published.
+     * @param name the name, which may not contain JMX's reserved characters
+     * @return the metrics
+     */
+    public static SolverMetrics forName(String name){
+        return REGISTRY.computeIfAbsent(name, n -> {
+            SolverMetrics metrics = new SolverMetrics();
+            try{
+                ManagementFactory.getPlatformMBeanServer().registerMBean(metrics,
+                        new ObjectName("solver:type=SolverMetrics,name=" + n));
+            }
+            catch (JMException ignored){
+            }
+            return metrics;
+        });
+    }
+
+    /**
+     * Adds a solve to the totals
+     * @param result the result of the solve
+     * @return the same result, so recording can wrap a return
+     */
+    public SolveResult record(SolveResult result){
+        switch (result.getStatus()){
+            case SOLVED -> solved.increment();
+            case NO_SOLUTION -> noSolution.increment();
+            case INVALID -> invalid.increment();
+            case TIMED_OUT -> timedOut.increment();
+            case CANCELLED -> cancelled.increment();
+        }
+        SolveStats stats = result.getStats();
+        nodes.add(stats.getNodes());
+        backtracks.add(stats.getBacktracks());
+        maxDepth.accumulateAndGet(stats.getMaxDepth(), Math::max);
+        singles.add(stats.getSingles());
+        validationNanos.add(stats.getValidationNanos());
+        propagationNanos.add(stats.getPropagationNanos());
+        searchNanos.add(stats.getSearchNanos());
+        latencies.record(stats.getTotalNanos());
+        return result;
+    }
+
+    @Override
+    public long getSolves(){
+        return solved.sum() + noSolution.sum() + invalid.sum() + timedOut.sum() + cancelled.sum();
+    }
+
+    @Override
+    public long getSolved(){
+        return solved.sum();
+    }
+
+    @Override
+    public long getNoSolution(){
+        return noSolution.sum();
+    }
+
+    @Override
+    public long getInvalid(){
+        return invalid.sum();
+    }
+
+    @Override
+    public long getTimedOut(){
+        return timedOut.sum();
+    }
+
+    @Override
+    public long getCancelled(){
+        return cancelled.sum();
+    }
+
+    @Override
+    public long getNodes(){
+        return nodes.sum();
+    }
+
+    @Override
+    public long getBacktracks(){
+        return backtracks.sum();
+    }
+
+    @Override
+    public int getMaxDepth(){
+        return maxDepth.get();
+    }
+
+    @Override
+    public long getSingles(){
+        return singles.sum();
+    }
+
+    @Override
+    public double getValidationMillis(){
+        return validationNanos.sum() / 1e6;
+    }
+
+    @Override
+    public double getPropagationMillis(){
+        return propagationNanos.sum() / 1e6;
+    }
+
+    @Override
+    public double getSearchMillis(){
+        return searchNanos.sum() / 1e6;
+    }
+
+    @Override
+    public double getMeanLatencyMicros(){
+        long solves = getSolves();
+        return solves == 0 ? 0 : (validationNanos.sum() + propagationNanos.sum() + searchNanos.sum()) / 1e3 / solves;
+    }
+
+    @Override
+    public long getP50LatencyMicros(){
+        return latencies.percentile(50) / 1000;
+    }
+
+    @Override
+    public long getP90LatencyMicros(){
+        return latencies.percentile(90) / 1000;
+    }
+
+    @Override
+    public long getP99LatencyMicros(){
+        return latencies.percentile(99) / 1000;
+    }
+
+    @Override
+    public long getP999LatencyMicros(){
+        return latencies.percentile(99.9) / 1000;
+    }
+
+    @Override
+    public long getMaxLatencyMicros(){
+        return latencies.percentile(100) / 1000;
+    }
+
+    @Override
+    public void reset(){
+        solved.reset();
+        noSolution.reset();
+        invalid.reset();
+        timedOut.reset();
+        cancelled.reset();
+        nodes.reset();
+        backtracks.reset();
+        maxDepth.set(0);
+        singles.reset();
+        validationNanos.reset();
+        propagationNanos.reset();
+        searchNanos.reset();
+        latencies.reset();
+    }
+
+    @Override
+    public String toString(){
+        return String.format("solves=%d solved=%d timedOut=%d nodes=%d backtracks=%d p50=%dus p99=%dus max=%dus",
+                getSolves(), getSolved(), getTimedOut(), getNodes(), getBacktracks(),
+                getP50LatencyMicros(), getP99LatencyMicros(), getMaxLatencyMicros());
+    }
+}
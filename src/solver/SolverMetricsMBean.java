@@ -0,0 +1,52 @@
+package solver;
+
+/**
+ * The management interface of {@link SolverMetrics}, as seen from JConsole or any other JMX client.
+ * Times are totals in milliseconds, and latencies are in microseconds.
+ *
+ * @author Dylan Sturr
+ */
+public interface SolverMetricsMBean {
+    long getSolves();
+
+    long getSolved();
+
+    long getNoSolution();
+
+    long getInvalid();
+
+    long getTimedOut();
+
+    long getCancelled();
+
+    long getNodes();
+
+    long getBacktracks();
+
+    int getMaxDepth();
+
+    long getSingles();
+
+    double getValidationMillis();
+
+    double getPropagationMillis();
+
+    double getSearchMillis();
+
+    double getMeanLatencyMicros();
+
+    long getP50LatencyMicros();
+
+    long getP90LatencyMicros();
+
+    long getP99LatencyMicros();
+
+    long getP999LatencyMicros();
+
+    long getMaxLatencyMicros();
+
+    /**
+     * Sets every counter and the latency histogram back to zero.
+     */
+    void reset();
+}
@@ -0,0 +1,31 @@
+package solver;
+
+import config.SudokuConfig;
+
+import java.util.Optional;
+
+/**
+ * A strategy for solving a Sudoku Configuration. Callers that only need an answer can depend on this
+ * interface and pick whichever engine suits their puzzles. A {@link Budget} bounds how long a solve may run,
+ * so one adversarial puzzle cannot hold a thread forever.
+ *
+ * @author Dylan Sturr
+ */
+public interface SudokuEngine {
+    /**
+     * Solves a sudoku puzzle without changing it, taking as long as it needs
+     * @param sc the Sudoku puzzle to solve
+     * @return the solved puzzle, or Optional.empty() if there is no solution.
+     */
+    default Optional<SudokuConfig> solve(SudokuConfig sc){
+        return solve(sc, Budget.unlimited()).getSolution();
+    }
+
+    /**
+     * Solves a sudoku puzzle without changing it, giving up once the budget runs out or is cancelled
+     * @param sc the Sudoku puzzle to solve
+     * @param budget the limits of the solve
+     * @return how the solve ended, the solution if there is one, and the statistics of the solve
+     */
+    SolveResult solve(SudokuConfig sc, Budget budget);
+}
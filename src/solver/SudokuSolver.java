@@ -1,82 +1,233 @@
 package solver;
 
-import config.SudokuCell;
+import config.SudokuBoard;
 import config.SudokuConfig;
-import main.Candidates;
 
-import java.util.List;
 import java.util.Optional;
-import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Utilizes Backtracking to solve a given Sudoku Configuration.
+ * <p>
+ * Every solve is measured, and its {@link SolveStats} are added to the {@link SolverMetrics} shared by every solver
+ * with the same heuristic and level. Counting solutions is not measured, since it is usually part of a larger job.
  *
  * @author Dylan Sturr
  */
-public class SudokuSolver {
+public class SudokuSolver implements SudokuEngine {
+    private final CellSelector selector;
+    private final Propagator.Level level;
+    private final NogoodTable nogoods;
+    private final SolverMetrics metrics;
+
+    /**
+     * Creates a solver that branches on the most constrained cell first and applies every technique at every step.
+     */
+    public SudokuSolver(){
+        this(new MinimumRemainingValuesSelector());
+    }
+
+    /**
+     * Creates a solver with a specific branching heuristic, applying every technique at every step.
+     * @param selector chooses the cell to branch on at every step of the search
+     */
+    public SudokuSolver(CellSelector selector){
+        this(selector, Propagator.Level.FULL);
+    }
+
+    /**
+     * Creates a solver with a specific branching heuristic and amount of logic per search node.
+     * @param selector chooses the cell to branch on at every step of the search
+     * @param level the techniques applied after every placement the search makes
+     */
+    public SudokuSolver(CellSelector selector, Propagator.Level level){
+        this(selector, level, null);
+    }
+
+    /**
+     * Creates a solver whose searches skip the boards in a table of dead ends, and add the ones they find to it.
+     * The table may be shared with other solvers, on any threads, as long as they solve puzzles of the same size.
+     * @param selector chooses the cell to branch on at every step of the search
+     * @param level the techniques applied after every placement the search makes
+     * @param nogoods the boards known to have no solution, or null to search without a table
+     */
+    public SudokuSolver(CellSelector selector, Propagator.Level level, NogoodTable nogoods){
+        this(selector, level, nogoods, SolverMetrics.forName(selector.getClass().getSimpleName() + "-" + level));
+    }
+
+    /**
+     * Creates a solver whose solves are added to metrics of the caller's choosing instead of the shared ones
+     * for its heuristic and level.
+     * @param selector chooses the cell to branch on at every step of the search
+     * @param level the techniques applied after every placement the search makes
+     * @param nogoods the boards known to have no solution, or null to search without a table
+     * @param metrics the metrics this solver's solves are added to
+     */
+    SudokuSolver(CellSelector selector, Propagator.Level level, NogoodTable nogoods, SolverMetrics metrics){
+        this.selector = selector;
+        this.level = level;
+        this.nogoods = nogoods;
+        this.metrics = metrics;
+    }
+
     /**
      * Utilizes logic to partially solve a sudoku puzzle, allowing the backtracker to be more efficient.
+     * Every technique the propagator knows is repeated until the puzzle stops changing.
      * @param sc the Sudoku puzzle to partially solve
      * @return the partially solved puzzle
      */
     public SudokuConfig soften(SudokuConfig sc){
-        for (int i = 0; i < 9; i++){
-            for (int j = 0; j < 9; j++){
-                List<Character> candidates = sc.getCellCandidates(i, j);
-                if (candidates.size() == 1){
-                    sc.getGrid()[i][j].setVal(candidates.getFirst());
-                    Candidates.configure(sc, i, j, candidates.getFirst(), 'n');
-                }
-            }
-            Map<Integer, Character> newRow = Candidates.rowCandidateCheck(sc.getGrid(), i);
-            for (int k : newRow.keySet()){
-                sc.getGrid()[i][k].setVal(newRow.get(k));
-                Candidates.configure(sc, i, k, newRow.get(k), 'r');
-            }
-        }
+        new Propagator(Propagator.Level.FULL).propagate(sc.getBoard());
+        return sc;
+    }
 
-        for (int i = 0; i < 9; i++){
-            SudokuCell[][] grid = sc.getGrid();
-            Map<Integer, Character> newCol = Candidates.colCandidateCheck(grid, i);
-            for (int j : newCol.keySet()){
-                grid[j][i].setVal(newCol.get(j));
-                Candidates.configure(sc, j, i, newCol.get(j), 'c');
-            }
-        }
+    /**
+     * The brute force method for solving a sudoku (backtracking). The search works on a single copy of the
+     * puzzle's board, changing it in place and undoing its changes on backtrack.
+     * @param sc the Sudoku puzzle to solve
+     * @param budget the limits of the solve
+     * @return how the solve ended, the solution if there is one, and the statistics of the solve
+     */
+    @Override
+    public SolveResult solve(SudokuConfig sc, Budget budget){
+        return metrics.record(run(sc, new SearchControl(selector, level, 1, budget, nogoods), null));
+    }
 
-        for (int i = 1; i < 7; i += 2){
-            for (int j = 1; j < 7; j += 2){
-                Map<Integer[], Character> newBox = Candidates.boxCandidateCheck(sc.getGrid(), i, j);
-                for (Integer[] k : newBox.keySet()){
-                    sc.getGrid()[k[0]][k[1]].setVal(newBox.get(k));
-                    Candidates.configure(sc, k[0], k[1], newBox.get(k), 'b');
-                }
-            }
-        }
+    /**
+     * Solves a sudoku puzzle like {@link #solve(SudokuConfig)}, and reports how the solve went.
+     * @param sc the Sudoku puzzle to solve
+     * @return how the solve ended, the solution if there is one, and the statistics of the solve
+     */
+    public SolveResult solveDetailed(SudokuConfig sc){
+        return solve(sc, Budget.unlimited());
+    }
 
-        return sc;
+    /**
+     * Solves a sudoku puzzle on every core of the common fork/join pool.
+     * @param sc the Sudoku puzzle to solve
+     * @return the solved puzzle, or Optional.empty() is there is no solution.
+     */
+    public Optional<SudokuConfig> solveParallel(SudokuConfig sc){
+        return solveParallel(sc, ForkJoinPool.commonPool());
     }
 
     /**
-     * The brute force method for solving a sudoku (backtracking)
+     * Solves a sudoku puzzle by splitting the top of the search tree into tasks for a fork/join pool.
+     * The tree is split deep enough to give each worker several subtrees to steal from, and the first
+     * solution found cancels the remaining tasks.
      * @param sc the Sudoku puzzle to solve
+     * @param pool the pool to run on
      * @return the solved puzzle, or Optional.empty() is there is no solution.
      */
-    public Optional<SudokuConfig> solve(SudokuConfig sc){
-        if (sc.isSolution()){
-            return Optional.of(sc);
+    public Optional<SudokuConfig> solveParallel(SudokuConfig sc, ForkJoinPool pool){
+        return solveParallel(sc, pool, Budget.unlimited()).getSolution();
+    }
+
+    /**
+     * Solves a sudoku puzzle on a fork/join pool like {@link #solveParallel(SudokuConfig, ForkJoinPool)},
+     * stopping every task once the budget runs out or is cancelled.
+     * @param sc the Sudoku puzzle to solve
+     * @param pool the pool to run on
+     * @param budget the limits of the solve
+     * @return how the solve ended, the solution if there is one, and the statistics of the solve
+     */
+    public SolveResult solveParallel(SudokuConfig sc, ForkJoinPool pool, Budget budget){
+        return metrics.record(run(sc, new SearchControl(selector, level, 1, budget, nogoods), pool));
+    }
+
+    /**
+     * Gets the metrics this solver's solves are added to
+     * @return the metrics
+     */
+    public SolverMetrics getMetrics(){
+        return metrics;
+    }
+
+    /**
+     * Counts the solutions of a sudoku puzzle, stopping as soon as the limit is reached. The count uses the same
+     * propagation and pruning as {@link #solve(SudokuConfig)}.
+     * @param sc the Sudoku puzzle
+     * @param limit the most solutions worth counting, such as 2 to check that a puzzle is well-formed
+     * @return the number of solutions, or the limit if there are at least that many
+     */
+    public long countSolutions(SudokuConfig sc, long limit){
+        SearchControl control = new SearchControl(selector, level, limit, Budget.unlimited(), nogoods);
+        run(sc, control, null);
+        return control.solutions();
+    }
+
+    /**
+     * Counts the solutions of a sudoku puzzle on every core of the common fork/join pool,
+     * stopping every task as soon as the limit is reached.
+     * @param sc the Sudoku puzzle
+     * @param limit the most solutions worth counting
+     * @return the number of solutions, or the limit if there are at least that many
+     */
+    public long countSolutionsParallel(SudokuConfig sc, long limit){
+        SearchControl control = new SearchControl(selector, level, limit, Budget.unlimited(), nogoods);
+        run(sc, control, ForkJoinPool.commonPool());
+        return control.solutions();
+    }
+
+    /**
+     * Streams the solutions of a sudoku puzzle, searching lazily so that only as many are found as the stream
+     * asks for. {@code solutions(sc).limit(n)} stops after n solutions, and {@code solutions(sc).parallel()} splits
+     * the remaining search tree between the workers of the common pool. The order of the solutions is
+     * deterministic for a sequential stream. Nothing is searched until a terminal operation runs, and the stream
+     * is not measured by the solver's metrics.
+     * @param sc the Sudoku puzzle, which is not changed
+     * @return the solutions, each on a board of its own, or an empty stream if the clues conflict
+     */
+    public Stream<SudokuConfig> solutions(SudokuConfig sc){
+        SudokuBoard board = new SudokuBoard(sc.getBoard());
+        if (board.hasConflicts()){
+            return Stream.empty();
         }
-        else{
-            List<SudokuConfig> successors = sc.getSuccessors();
-            for (SudokuConfig ss : successors){
-                if (ss.isValid(ss.getCursorRow(), ss.getCursorCol())){
-                    Optional<SudokuConfig> sol = solve(ss);
-                    if (sol.isPresent()){
-                        return sol;
-                    }
-                }
+        return StreamSupport.stream(new SolutionSpliterator(board, selector, level), false);
+    }
+
+    /**
+     * Checks that a puzzle is well-formed, meaning it has exactly one solution.
+     * @param sc the Sudoku puzzle
+     * @return whether the puzzle has a unique solution
+     */
+    public boolean isUnique(SudokuConfig sc){
+        return countSolutions(sc, 2) == 1;
+    }
+
+    /**
+     * Solves a copy of the puzzle in three timed phases: checking the clues, propagating, and searching.
+     * A solve whose budget is already spent by the time propagation ends does not search at all.
+     * @param pool the pool to split the search over, or null to search on the calling thread
+     */
+    private static SolveResult run(SudokuConfig sc, SearchControl control, ForkJoinPool pool){
+        long start = System.nanoTime();
+        SudokuBoard board = new SudokuBoard(sc.getBoard());
+        boolean valid = !board.hasConflicts();
+        long validated = System.nanoTime();
+
+        Propagator propagator = new Propagator(control.level());
+        boolean consistent = valid && propagator.propagate(board);
+        long propagated = System.nanoTime();
+
+        if (consistent && !control.checkpoint(0)){
+            if (pool == null){
+                new Search(board, control, 0).run();
+            }
+            else{
+                pool.invoke(new ParallelSearch(board, 0, ParallelSearch.splitDepth(pool.getParallelism()), control));
             }
-            return Optional.empty();
         }
+        long searched = System.nanoTime();
+
+        SolveStats stats = new SolveStats(control.nodes(), control.backtracks(), control.maxDepth(), propagator.placements(),
+                validated - start, propagated - validated, searched - propagated);
+        SudokuBoard solution = control.solution();
+        SolveResult.Status status = !valid ? SolveResult.Status.INVALID
+                : solution != null ? SolveResult.Status.SOLVED
+                : control.interruption() != null ? control.interruption() : SolveResult.Status.NO_SOLUTION;
+        return new SolveResult(status, solution == null ? null : new SudokuConfig(solution), stats);
     }
 }